@@ -0,0 +1,73 @@
+package tlv.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tlv.TLVBatchDecoder;
+import tlv.TLVDecodeResult;
+import tlv.TLVDecoder;
+
+/**
+ * 重放积压数据时解析count个首尾相连的消息：逐个顺序解析和{@link TLVBatchDecoder}并行解析的对比
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchDecodeBenchmark {
+
+    @Param({"wide"})
+    public String shape;
+
+    @Param({"8"})
+    public int valueSize;
+
+    @Param({"10000"})
+    public int count;
+
+    private byte[] backlog;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] message = MessageShapes.encode(shape, valueSize);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(message.length * count);
+        for (int i = 0; i < count; i++) {
+            out.write(message);
+        }
+        backlog = out.toByteArray();
+    }
+
+    @Benchmark
+    public List<TLVDecodeResult> sequential() throws IOException {
+        List<TLVDecodeResult> results = new ArrayList<TLVDecodeResult>(count);
+        int offset = 0;
+        while (offset < backlog.length) {
+            int size = TLVDecoder.getTotalBytesSize(backlog, offset, backlog.length);
+            results.add(TLVDecoder.decode(backlog, offset, size));
+            offset += size;
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<TLVDecodeResult> parallel() throws IOException {
+        return TLVBatchDecoder.decode(backlog);
+    }
+}
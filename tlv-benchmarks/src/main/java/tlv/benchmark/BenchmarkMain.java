@@ -0,0 +1,20 @@
+package tlv.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * benchmarks.jar的入口，参数和JMH命令行一致，默认加上gc profiler，同时输出ops/s和每次操作分配的字节数（gc.alloc.rate.norm）
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
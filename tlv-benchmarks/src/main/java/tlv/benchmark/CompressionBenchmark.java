@@ -0,0 +1,70 @@
+package tlv.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tlv.TLVCompressor;
+import tlv.TLVObject;
+
+/**
+ * {@link TLVCompressor}压缩和解压聊天记录这类文本消息的性能，messages为消息中的文本条数
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionBenchmark {
+
+    @Param({"16", "256"})
+    public int messages;
+
+    @Param({"1", "6"})
+    public int level;
+
+    private TLVCompressor compressor;
+
+    private byte[] raw;
+
+    private byte[] compressed;
+
+    @Setup
+    public void setup() throws IOException {
+        compressor = new TLVCompressor(TLVCompressor.DEFAULT_THRESHOLD, level, TLVCompressor.DEFAULT_MAX_DECOMPRESSED_SIZE);
+        TLVObject history = new TLVObject();
+        for (int i = 0; i < messages; i++) {
+            TLVObject message = new TLVObject();
+            message.put(1, 1500000000000L + i * 1000L);
+            message.put(2, "user" + (i % 5));
+            message.put(3, "message " + i + ": see you at the meeting room on the third floor at ten o'clock");
+            history.put(4, message);
+        }
+        TLVObject root = new TLVObject();
+        root.put(MessageShapes.ROOT_TAG, history);
+        raw = root.toByteArray();
+        compressed = compressor.compress(raw);
+    }
+
+    @Benchmark
+    public byte[] compress() {
+        return compressor.compress(raw);
+    }
+
+    @Benchmark
+    public byte[] decompress() throws IOException {
+        return compressor.decompress(compressed);
+    }
+}
@@ -0,0 +1,96 @@
+package tlv.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tlv.TLVDecodeResult;
+import tlv.TLVDecoder;
+import tlv.TLVScanner;
+import tlv.TLVValidator;
+
+/**
+ * {@link TLVDecoder}解析不同形状消息的性能，shape见{@link MessageShapes#encode(String, int)}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecoderBenchmark {
+
+    @Param({"flat", "wide", "deep"})
+    public String shape;
+
+    @Param({"8", "256"})
+    public int valueSize;
+
+    private byte[] message;
+
+    private final int[][] paths = {{MessageShapes.ROOT_TAG, 1}, {MessageShapes.ROOT_TAG, 2}};
+
+    private final int[] selected = new int[4];
+
+    private final TLVScanner scanner = new TLVScanner();
+
+    @Setup
+    public void setup() {
+        message = MessageShapes.encode(shape, valueSize);
+    }
+
+    @Benchmark
+    public TLVDecodeResult decode() throws Throwable {
+        return TLVDecoder.decode(message);
+    }
+
+    /**
+     * 只读取第一层的两个字段
+     */
+    @Benchmark
+    public long decodeLazyTwoFields() throws IOException {
+        TLVDecodeResult result = TLVDecoder.decodeLazy(message);
+        return result.getResultByTagValue(1).getLength() + result.getResultByTagValue(2).getLength();
+    }
+
+    /**
+     * 和{@link #decodeLazyTwoFields()}读取同样的两个字段，只按路径跳过不需要的子树
+     */
+    @Benchmark
+    public long selectTwoFields() {
+        TLVDecoder.select(message, 0, message.length, paths, selected);
+        return selected[1] + selected[3];
+    }
+
+    /**
+     * {@link TLVValidator}校验整个消息的结构，即{@link tlv.TLVByteBuffer}截取每个TLV前额外的开销
+     */
+    @Benchmark
+    public int validate() {
+        return TLVValidator.DEFAULT.validate(message, 0, message.length);
+    }
+
+    @Benchmark
+    public int getTLVSize() {
+        return TLVDecoder.getTLVSize(message);
+    }
+
+    /**
+     * 统计节点个数、深度、tagValue分布和Value字节数
+     */
+    @Benchmark
+    public int scan() {
+        return scanner.scan(message);
+    }
+}
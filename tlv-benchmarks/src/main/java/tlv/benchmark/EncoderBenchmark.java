@@ -0,0 +1,55 @@
+package tlv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tlv.TLVEncoder;
+
+/**
+ * {@link TLVEncoder#encode}单个TLV编码的性能
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncoderBenchmark {
+
+    /**
+     * 小于31的是单字节Tag，其余是多字节Tag
+     */
+    @Param({"5", "300"})
+    public int tagValue;
+
+    @Param({"8", "256", "4096"})
+    public int valueSize;
+
+    private byte[] value;
+
+    @Setup
+    public void setup() {
+        value = new byte[valueSize];
+    }
+
+    @Benchmark
+    public byte[] encodeBytes() {
+        return TLVEncoder.encode(TLVEncoder.PRIMITIVE_FRAME, TLVEncoder.PRIMITIVE_DATA, tagValue, value).toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeLong() {
+        return TLVEncoder.encode(TLVEncoder.PRIMITIVE_FRAME, TLVEncoder.PRIMITIVE_DATA, tagValue, 1234567890123L).toByteArray();
+    }
+}
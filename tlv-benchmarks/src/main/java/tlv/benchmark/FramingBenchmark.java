@@ -0,0 +1,78 @@
+package tlv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import tlv.TLVByteBuffer;
+import tlv.TLVFrameBuffer;
+
+/**
+ * {@link TLVByteBuffer}和不加锁的{@link TLVFrameBuffer}在突发输入下的分帧性能：一次收到burst个TLV，按chunkSize分段写入，每次写入后截取出所有完整的TLV
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FramingBenchmark {
+
+    @Param({"1", "64", "1024"})
+    public int burst;
+
+    @Param({"32", "512"})
+    public int frameSize;
+
+    /**
+     * 每次写入的字节数，0表示整个突发一次写入
+     */
+    @Param({"0", "1460"})
+    public int chunkSize;
+
+    private byte[] input;
+
+    @Setup
+    public void setup() {
+        byte[] frame = MessageShapes.encode(4, 1, Math.max(1, (frameSize - 12) / 4));
+        input = new byte[frame.length * burst];
+        for (int i = 0; i < burst; i++) {
+            System.arraycopy(frame, 0, input, i * frame.length, frame.length);
+        }
+    }
+
+    @Benchmark
+    public void cutBurst(Blackhole blackhole) {
+        TLVByteBuffer buffer = new TLVByteBuffer();
+        int chunk = chunkSize == 0 ? input.length : chunkSize;
+        for (int offset = 0; offset < input.length; offset += chunk) {
+            buffer.write(input, offset, Math.min(chunk, input.length - offset));
+            while (buffer.hasNextTLVData()) {
+                blackhole.consume(buffer.cutNextTLVData());
+            }
+        }
+    }
+
+    @Benchmark
+    public void cutBurstUnsynchronized(Blackhole blackhole) {
+        TLVFrameBuffer buffer = new TLVFrameBuffer();
+        int chunk = chunkSize == 0 ? input.length : chunkSize;
+        for (int offset = 0; offset < input.length; offset += chunk) {
+            buffer.write(input, offset, Math.min(chunk, input.length - offset));
+            while (buffer.hasNextTLVData()) {
+                blackhole.consume(buffer.cutNextTLVData());
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package tlv.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tlv.TLVObject;
+
+/**
+ * 带有大Value的消息写入channel：先{@link TLVObject#toByteArray()}合并再写和{@link TLVObject#writeTo(GatheringByteChannel)}集中写的对比。
+ * channel只移动position、不复制数据，结果只反映编码这一侧的开销
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GatherBenchmark {
+
+    @Param({"65536", "4194304"})
+    public int payloadSize;
+
+    private TLVObject message;
+
+    private final GatheringByteChannel sink = new GatheringByteChannel() {
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            long n = 0;
+            for (int i = offset; i < offset + length; i++) {
+                n += write(srcs[i]);
+            }
+            return n;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Setup
+    public void setup() throws IOException {
+        TLVObject file = new TLVObject();
+        file.put(1, "report.bin");
+        file.put(2, (long) payloadSize);
+        file.putShared(3, new byte[payloadSize]);
+        message = new TLVObject();
+        message.put(MessageShapes.ROOT_TAG, file);
+    }
+
+    @Benchmark
+    public int concatenate() throws IOException {
+        return sink.write(ByteBuffer.wrap(message.toByteArray()));
+    }
+
+    @Benchmark
+    public long gather() throws IOException {
+        return message.writeTo(sink);
+    }
+}
@@ -0,0 +1,136 @@
+package tlv.benchmark;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tlv.TLVBlockingServer;
+import tlv.TLVDecodeResult;
+import tlv.TLVObject;
+import tlv.TLVSession;
+import tlv.TLVSessionHandler;
+
+/**
+ * {@link TLVBlockingServer}的本机回环压力测试：同时建立connections个连接，全部建立后每个连接依次发送messages个请求并等待回应，
+ * 输出连接建立耗时、请求吞吐量和堆内存占用，用来观察连接数增加时的伸缩情况。
+ * <p/>
+ * 运行：java -cp tlv-benchmarks/target/benchmarks.jar tlv.benchmark.LoopbackLoadTest [connections] [messages]
+ * <p/>
+ * 每个连接在本机占用两个文件描述符，连接数较大时需要先调高ulimit -n，
+ * 在Java 21及以上运行时使用虚拟线程，否则每个连接占用两个平台线程
+ */
+public class LoopbackLoadTest {
+
+    private static final int REQUEST_TAG = 1;
+
+    private static final int RESPONSE_TAG = 2;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        System.out.println("virtual threads: " + TLVBlockingServer.isVirtualThreadAvailable());
+        System.out.println("connections: " + connections + ", messages per connection: " + messages);
+
+        TLVBlockingServer server = new TLVBlockingServer(new TLVSessionHandler() {
+            @Override
+            public void handle(TLVSession session) throws Exception {
+                TLVDecodeResult request;
+                while ((request = session.read()) != null) {
+                    TLVObject response = new TLVObject();
+                    response.put(RESPONSE_TAG, request.getLongValue());
+                    session.send(response);
+                }
+            }
+        });
+        InetSocketAddress address = server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), connections);
+
+        CountDownLatch connected = new CountDownLatch(connections);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(connections);
+        AtomicInteger failures = new AtomicInteger();
+        AtomicLong roundTrips = new AtomicLong();
+        long begin = System.nanoTime();
+        ThreadFactory threadFactory = TLVBlockingServer.newThreadFactory();
+        for (int i = 0; i < connections; i++) {
+            threadFactory.newThread(new Client(address, messages, connected, start, finished, failures, roundTrips)).start();
+        }
+        connected.await();
+        long connectNanos = System.nanoTime() - begin;
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+
+        begin = System.nanoTime();
+        start.countDown();
+        finished.await();
+        long runNanos = System.nanoTime() - begin;
+        server.close();
+
+        System.out.println("connect: " + TimeUnit.NANOSECONDS.toMillis(connectNanos) + " ms");
+        System.out.println("heap used with all connections open: " + (heapUsed >> 20) + " MB");
+        System.out.println("round trips: " + roundTrips.get() + " in " + TimeUnit.NANOSECONDS.toMillis(runNanos) + " ms, "
+                + (roundTrips.get() * 1000000000L / Math.max(runNanos, 1)) + " per second");
+        System.out.println("failed connections: " + failures.get());
+    }
+
+    private static class Client implements Runnable {
+
+        private final InetSocketAddress address;
+        private final int messages;
+        private final CountDownLatch connected;
+        private final CountDownLatch start;
+        private final CountDownLatch finished;
+        private final AtomicInteger failures;
+        private final AtomicLong roundTrips;
+
+        Client(InetSocketAddress address, int messages, CountDownLatch connected, CountDownLatch start,
+               CountDownLatch finished, AtomicInteger failures, AtomicLong roundTrips) {
+            this.address = address;
+            this.messages = messages;
+            this.connected = connected;
+            this.start = start;
+            this.finished = finished;
+            this.failures = failures;
+            this.roundTrips = roundTrips;
+        }
+
+        @Override
+        public void run() {
+            TLVSession session = null;
+            try {
+                try {
+                    session = TLVBlockingServer.connect(address);
+                } finally {
+                    connected.countDown();
+                }
+                start.await();
+                for (int i = 0; i < messages; i++) {
+                    TLVObject request = new TLVObject();
+                    request.put(REQUEST_TAG, (long) i);
+                    session.send(request);
+                    TLVDecodeResult response = session.read();
+                    if (response == null || response.getLongValue() != i) {
+                        throw new IOException("unexpected response");
+                    }
+                }
+                roundTrips.addAndGet(messages);
+            } catch (Exception e) {
+                failures.incrementAndGet();
+            } finally {
+                finished.countDown();
+                if (session != null) {
+                    try {
+                        session.close();
+                    } catch (IOException e) {
+                        // 忽略关闭时的异常
+                    }
+                }
+            }
+        }
+    }
+}
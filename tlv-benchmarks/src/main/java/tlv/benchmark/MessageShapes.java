@@ -0,0 +1,84 @@
+package tlv.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+
+import tlv.TLVObject;
+
+/**
+ * 按宽度、深度和Value大小生成测试用的TLV消息，同样的参数总是生成同样的内容
+ */
+public final class MessageShapes {
+
+    /**
+     * 最外层消息的tagValue，超过31以覆盖多字节Tag的编码
+     */
+    public static final int ROOT_TAG = 100;
+
+    private MessageShapes() {
+    }
+
+    /**
+     * 生成消息对象
+     *
+     * @param width     每一层Constructed类型的子TLV个数
+     * @param depth     嵌套层数，1表示只有一层基本类型的子TLV
+     * @param valueSize 每个基本类型子TLV的Value字节数
+     * @return 只包含一个tagValue为{@link #ROOT_TAG}的Constructed类型TLV的对象
+     */
+    public static TLVObject build(int width, int depth, int valueSize) {
+        TLVObject root = new TLVObject();
+        root.put(ROOT_TAG, buildLevel(new Random(width * 31 + depth), width, depth, valueSize));
+        return root;
+    }
+
+    /**
+     * 生成消息编码后的字节数组
+     *
+     * @param width
+     * @param depth
+     * @param valueSize
+     * @return
+     */
+    public static byte[] encode(int width, int depth, int valueSize) {
+        return build(width, depth, valueSize).toByteArray();
+    }
+
+    /**
+     * 按shape名称生成消息编码后的字节数组：flat为8个子TLV一层，wide为256个子TLV一层，deep为每层2个子TLV共12层
+     *
+     * @param shape
+     * @param valueSize
+     * @return
+     */
+    public static byte[] encode(String shape, int valueSize) {
+        if ("flat".equals(shape)) {
+            return encode(8, 1, valueSize);
+        } else if ("wide".equals(shape)) {
+            return encode(256, 1, valueSize);
+        } else if ("deep".equals(shape)) {
+            return encode(2, 12, valueSize);
+        }
+        throw new IllegalArgumentException("unknown shape: " + shape);
+    }
+
+    private static TLVObject buildLevel(Random random, int width, int depth, int valueSize) {
+        TLVObject object = new TLVObject();
+        try {
+            for (int i = 0; i < width; i++) {
+                // tagValue从1开始，超过30之后是多字节Tag
+                int tagValue = i + 1;
+                if (depth > 1 && i == 0) {
+                    object.put(tagValue, buildLevel(random, width, depth - 1, valueSize));
+                } else {
+                    byte[] value = new byte[valueSize];
+                    random.nextBytes(value);
+                    object.put(tagValue, value);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return object;
+    }
+}
@@ -0,0 +1,70 @@
+package tlv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tlv.TLVObject;
+import tlv.TLVWriter;
+
+/**
+ * 用{@link TLVObject}构建嵌套消息并编码的性能，以及用{@link TLVWriter}编码同样形状消息的性能
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TLVObjectBenchmark {
+
+    @Param({"4", "32"})
+    public int width;
+
+    @Param({"1", "4", "12"})
+    public int depth;
+
+    @Param({"8", "256"})
+    public int valueSize;
+
+    private final byte[] value = new byte[256];
+
+    @Benchmark
+    public byte[] buildAndEncode() {
+        return MessageShapes.build(width, depth, valueSize).toByteArray();
+    }
+
+    /**
+     * 复用当前线程的TLVWriter，稳定状态下不分配内存
+     */
+    @Benchmark
+    public int writerEncode() {
+        TLVWriter writer = TLVWriter.get();
+        writer.beginConstructed(MessageShapes.ROOT_TAG);
+        writeLevel(writer, depth);
+        writer.endConstructed();
+        return writer.size();
+    }
+
+    private void writeLevel(TLVWriter writer, int level) {
+        for (int i = 0; i < width; i++) {
+            int tagValue = i + 1;
+            if (level > 1 && i == 0) {
+                writer.beginConstructed(tagValue);
+                writeLevel(writer, level - 1);
+                writer.endConstructed();
+            } else {
+                writer.put(tagValue, value, 0, valueSize);
+            }
+        }
+    }
+}
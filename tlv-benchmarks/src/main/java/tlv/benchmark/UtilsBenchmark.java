@@ -0,0 +1,49 @@
+package tlv.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tlv.TLVUtils;
+
+/**
+ * {@link TLVUtils#longToByteArray(long)}和{@link TLVUtils#byteArrayToLong(byte[])}的性能，value分别编码为1、2、4、8个字节
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UtilsBenchmark {
+
+    @Param({"100", "30000", "2000000000", "9000000000000"})
+    public long value;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        bytes = TLVUtils.longToByteArray(value);
+    }
+
+    @Benchmark
+    public byte[] longToByteArray() {
+        return TLVUtils.longToByteArray(value);
+    }
+
+    @Benchmark
+    public long byteArrayToLong() {
+        return TLVUtils.byteArrayToLong(bytes);
+    }
+}
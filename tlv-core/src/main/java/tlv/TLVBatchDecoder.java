@@ -0,0 +1,187 @@
+package tlv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 批量解析首尾相连的多个最外层TLV，例如重放积压数据时一次读入的整段字节数组。
+ * <p/>
+ * 解析分两步：先顺序扫描一遍，只按Tag和Length的规则找出每个TLV的边界，不解析Value；
+ * 再把各个TLV分给ForkJoinPool中的线程并行解析，结果按原始顺序返回。解析结果和
+ * {@link TLVDecoder#decode(byte[], int, int)}一样直接指向原始数组，使用期间不能修改原始数组
+ */
+public class TLVBatchDecoder {
+
+    /**
+     * 单个并行任务至少解析的字节数，数据少于这个值时直接在调用线程中解析
+     */
+    private static final int MIN_BYTES_PER_TASK = 64 * 1024;
+
+    /**
+     * 扫描边界时只检查Tag和Length的格式，不限制总字节数
+     */
+    private static final TLVValidator HEADER_VALIDATOR = new TLVValidator(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    /**
+     * 顺序扫描[offset, offset + length)范围内首尾相连的TLV的边界，只读取Tag和Length。
+     * <p/>
+     * 返回数组的长度为TLV个数加1，第i个TLV占用[bounds[i], bounds[i + 1])；最后一个TLV不完整时不计入，
+     * 此时bounds的最后一个元素小于offset + length，调用者可以据此保留剩余的数据。Tag或Length格式错误时抛出异常，
+     * 而不是当作不完整的数据，否则之后的TLV会被静默丢弃
+     *
+     * @param array
+     * @param offset 第一个TLV的起始下标
+     * @param length 数据长度
+     * @return 各个TLV的起始下标，最后一个元素是最后一个完整TLV的结束下标
+     * @throws IOException Tag或Length格式错误
+     */
+    public static int[] scan(byte[] array, int offset, int length) throws IOException {
+        int limit = offset + length;
+        int[] bounds = new int[16];
+        int count = 0;
+        int position = offset;
+        while (position < limit) {
+            int totalBytesSize = HEADER_VALIDATOR.validateHeader(array, position, limit);
+            if (totalBytesSize < 0) {
+                throw new IOException(TLVValidator.getErrorMessage(totalBytesSize) + " at offset " + position);
+            }
+            if (totalBytesSize == TLVValidator.INCOMPLETE || totalBytesSize > limit - position) {
+                break;
+            }
+            if (count + 1 == bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length << 1);
+            }
+            bounds[count++] = position;
+            position += totalBytesSize;
+        }
+        bounds[count] = position;
+        return Arrays.copyOf(bounds, count + 1);
+    }
+
+    /**
+     * 在公共ForkJoinPool中并行解析字节数组中的所有TLV
+     *
+     * @param array
+     * @return
+     * @see #decode(byte[], int, int, ForkJoinPool)
+     */
+    public static List<TLVDecodeResult> decode(byte[] array) throws IOException {
+        if (array == null) {
+            return null;
+        }
+        return decode(array, 0, array.length, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 在公共ForkJoinPool中并行解析[offset, offset + length)范围内的所有TLV
+     *
+     * @param array
+     * @param offset
+     * @param length
+     * @return
+     * @see #decode(byte[], int, int, ForkJoinPool)
+     */
+    public static List<TLVDecodeResult> decode(byte[] array, int offset, int length) throws IOException {
+        return decode(array, offset, length, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 在指定的ForkJoinPool中并行解析[offset, offset + length)范围内的所有TLV，结果按TLV在数组中的顺序排列。
+     * 最后一个TLV不完整时忽略，需要保留剩余数据的调用者应先调用{@link #scan(byte[], int, int)}，
+     * 再调用{@link #decode(byte[], int[], ForkJoinPool)}
+     *
+     * @param array
+     * @param offset
+     * @param length
+     * @param pool
+     * @return
+     * @throws IOException 某个TLV的Tag或Length格式错误，或者解析失败
+     */
+    public static List<TLVDecodeResult> decode(byte[] array, int offset, int length, ForkJoinPool pool) throws IOException {
+        if (array == null) {
+            return null;
+        }
+        return decode(array, scan(array, offset, length), pool);
+    }
+
+    /**
+     * 按{@link #scan(byte[], int, int)}得到的边界并行解析各个TLV
+     *
+     * @param array
+     * @param bounds 各个TLV的起始下标，最后一个元素是最后一个TLV的结束下标
+     * @param pool
+     * @return
+     */
+    public static List<TLVDecodeResult> decode(byte[] array, int[] bounds, ForkJoinPool pool) throws IOException {
+        int count = bounds.length - 1;
+        TLVDecodeResult[] results = new TLVDecodeResult[count];
+        DecodeTask task = new DecodeTask(array, bounds, results, 0, count);
+        if (bounds[count] - bounds[0] < MIN_BYTES_PER_TASK || pool.getParallelism() == 1) {
+            task.decodeRange();
+        } else {
+            try {
+                pool.invoke(task);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return new ArrayList<TLVDecodeResult>(Arrays.asList(results));
+    }
+
+    /**
+     * 按字节数二分TLV下标区间，直到区间内的数据少于{@link #MIN_BYTES_PER_TASK}或只剩一个TLV
+     */
+    private static class DecodeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] array;
+        private final int[] bounds;
+        private final TLVDecodeResult[] results;
+        private final int from;
+        private final int to;
+
+        DecodeTask(byte[] array, int[] bounds, TLVDecodeResult[] results, int from, int to) {
+            this.array = array;
+            this.bounds = bounds;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1 || bounds[to] - bounds[from] < MIN_BYTES_PER_TASK) {
+                try {
+                    decodeRange();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return;
+            }
+            // 按字节数而不是TLV个数找中点，TLV大小不均匀时各个任务的工作量也接近
+            int middle = Arrays.binarySearch(bounds, from, to, bounds[from] + ((bounds[to] - bounds[from]) >>> 1));
+            if (middle < 0) {
+                middle = -middle - 1;
+            }
+            if (middle <= from) {
+                middle = from + 1;
+            } else if (middle >= to) {
+                middle = to - 1;
+            }
+            invokeAll(new DecodeTask(array, bounds, results, from, middle),
+                    new DecodeTask(array, bounds, results, middle, to));
+        }
+
+        void decodeRange() throws IOException {
+            for (int i = from; i < to; i++) {
+                results[i] = TLVDecoder.decode(array, bounds[i], bounds[i + 1] - bounds[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package tlv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 每个连接一个线程的TLV服务端，连接由{@link TLVSessionHandler}用阻塞的方式处理，是{@link TLVReactor}之外的另一种模型。
+ * <p/>
+ * 运行在支持虚拟线程的JVM（Java 21及以上）时每个连接使用一个虚拟线程，阻塞读写只占用很少的内存，
+ * 单个JVM可以同时处理十万级别的连接；在更早的JVM上退回到普通的平台线程，行为不变。
+ * 读取使用不加锁的{@link TLVFrameReader}，发送直接写socket，热路径上没有synchronized，不会固定虚拟线程
+ */
+public class TLVBlockingServer implements Closeable {
+
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = virtualThreadFactory();
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final TLVSessionHandler handler;
+
+    private final ThreadFactory threadFactory;
+
+    private ServerSocket serverSocket;
+
+    private Thread acceptor;
+
+    private volatile boolean running = false;
+
+    public TLVBlockingServer(TLVSessionHandler handler) {
+        this(handler, newThreadFactory());
+    }
+
+    /**
+     * @param handler
+     * @param threadFactory 创建连接线程和接受线程的工厂
+     */
+    public TLVBlockingServer(TLVSessionHandler handler, ThreadFactory threadFactory) {
+        this.handler = handler;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * 当前JVM是否支持虚拟线程
+     *
+     * @return
+     */
+    public static boolean isVirtualThreadAvailable() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    /**
+     * 创建连接线程的默认工厂：支持虚拟线程时创建虚拟线程，否则创建守护平台线程
+     *
+     * @return
+     */
+    public static ThreadFactory newThreadFactory() {
+        if (VIRTUAL_THREAD_FACTORY != null) {
+            return VIRTUAL_THREAD_FACTORY;
+        }
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "TLVSession-" + THREAD_NUMBER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * 在address上监听并开始接受连接
+     *
+     * @param address 端口为0时由系统分配
+     * @return 实际监听的地址
+     * @throws IOException
+     */
+    public InetSocketAddress start(SocketAddress address) throws IOException {
+        return start(address, 0);
+    }
+
+    /**
+     * 在address上监听并开始接受连接
+     *
+     * @param address 端口为0时由系统分配
+     * @param backlog 等待接受的连接队列长度，为0时使用系统默认值
+     * @return 实际监听的地址
+     * @throws IOException
+     */
+    public InetSocketAddress start(SocketAddress address, int backlog) throws IOException {
+        if (running) {
+            throw new IllegalStateException("the server is already started");
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(address, backlog);
+        running = true;
+        acceptor = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        });
+        acceptor.start();
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    /**
+     * 停止接受新的连接，已经建立的连接由各自的handler处理完
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    /**
+     * 阻塞连接到address
+     *
+     * @param address
+     * @return
+     * @throws IOException
+     */
+    public static TLVSession connect(SocketAddress address) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(address);
+            return new TLVSession(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 在一个新的连接线程（支持时为虚拟线程）中连接到address并交给handler处理，handler返回后连接被关闭
+     *
+     * @param address
+     * @param handler
+     * @return 已经启动的连接线程
+     */
+    public static Thread connect(final SocketAddress address, final TLVSessionHandler handler) {
+        Thread thread = newThreadFactory().newThread(new Runnable() {
+            @Override
+            public void run() {
+                TLVSession session;
+                try {
+                    session = connect(address);
+                } catch (IOException e) {
+                    throw new IllegalStateException("can not connect to " + address, e);
+                }
+                serve(session, handler);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!running) {
+                    break;
+                }
+                continue;
+            }
+            try {
+                socket.setTcpNoDelay(true);
+                final TLVSession session = new TLVSession(socket);
+                threadFactory.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(session, handler);
+                    }
+                }).start();
+            } catch (Throwable e) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // 忽略关闭时的异常
+                }
+            }
+        }
+    }
+
+    private static void serve(TLVSession session, TLVSessionHandler handler) {
+        try {
+            handler.handle(session);
+        } catch (Exception e) {
+            // 连接出错只影响这一个连接
+        } finally {
+            try {
+                session.close();
+            } catch (IOException e) {
+                // 忽略关闭时的异常
+            }
+        }
+    }
+
+    /**
+     * 通过反射获取Thread.ofVirtual().factory()，编译目标是Java 8，不能直接引用虚拟线程的API
+     *
+     * @return 不支持虚拟线程时返回null
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "TLVSession-", 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (Throwable e) {
+            // Java 21之前没有虚拟线程（19、20需要--enable-preview）
+            return null;
+        }
+    }
+}
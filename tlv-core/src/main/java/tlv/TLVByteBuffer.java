@@ -0,0 +1,219 @@
+package tlv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * TLV字节数据缓冲区
+ * <p/>
+ * 内部按读写下标工作：{@link #count}是写下标，{@link #readPosition}是读下标，[readPosition, count)之间是还没有被截取的数据。
+ * 截取一个TLV只复制这个TLV本身的字节并移动读下标，剩余的数据原地不动；只有在写入时空间不够才把未读数据整体移动到数组头部，
+ * 因此一次收到N个TLV时截取的总开销和数据量成正比，而不是N的平方。
+ * 所有方法都是同步的，只在一个线程中使用时可以换成不加锁的{@link TLVFrameBuffer}，一个IO线程写入、一个工作线程截取时可以换成无锁的{@link TLVSpscFrameBuffer}
+ * <p/>
+ * 每个TLV在截取之前先经过{@link TLVValidator}校验：Tag和Length一到就检查声明的总字节数，完整之后再检查整个结构，
+ * 格式错误时抛出{@link IllegalStateException}，此后的数据已经无法分帧，调用者应当关闭连接或者{@link #reset()}
+ * Created by lhd on 2015/09/26.
+ */
+public class TLVByteBuffer extends ByteArrayOutputStream {
+
+    private static boolean printLog = false;
+
+    /**
+     * 读下标，之前的数据都已经被截取走了
+     */
+    private int readPosition = 0;
+
+    private volatile int firstTotalSize = 0;
+
+    private final TLVValidator validator;
+
+    public TLVByteBuffer() {
+        this(TLVValidator.DEFAULT);
+    }
+
+    /**
+     * @param validator 截取前校验TLV的校验器，为null时不校验
+     */
+    public TLVByteBuffer(TLVValidator validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * 检测是否已经有第一个完整的TLV字节数据
+     *
+     * @return
+     * @throws IllegalStateException 第一个TLV没有通过校验
+     */
+    public synchronized boolean hasNextTLVData() {
+        if (count == readPosition) {
+            return false;
+        }
+
+        compute();
+        return firstTotalSize > 0 && firstTotalSize <= count - readPosition;
+    }
+
+    @Override
+    public synchronized void reset() {
+        super.reset();
+        readPosition = 0;
+        firstTotalSize = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        super.close();
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        ensureWritable(1);
+        byte[] oldBuf = buf;
+        super.write(b);
+        if (TLVMetricsRegistry.ENABLED) {
+            recordWrite(oldBuf, 1);
+        }
+    }
+
+    @Override
+    public synchronized void write(byte[] buffer, int offset, int len) {
+        ensureWritable(len);
+        byte[] oldBuf = buf;
+        super.write(buffer, offset, len);
+        if (TLVMetricsRegistry.ENABLED) {
+            recordWrite(oldBuf, len);
+        }
+    }
+
+    /**
+     * 未截取的数据字节数
+     *
+     * @return
+     */
+    @Override
+    public synchronized int size() {
+        return count - readPosition;
+    }
+
+    /**
+     * 未截取的数据
+     *
+     * @return
+     */
+    @Override
+    public synchronized byte[] toByteArray() {
+        return Arrays.copyOfRange(buf, readPosition, count);
+    }
+
+    @Override
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        out.write(buf, readPosition, count - readPosition);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return new String(buf, readPosition, count - readPosition);
+    }
+
+    @Override
+    public synchronized String toString(String charsetName) throws UnsupportedEncodingException {
+        return new String(buf, readPosition, count - readPosition, charsetName);
+    }
+
+    /**
+     * 将第一个完整的tlv字节数据截取出来并从缓存中抹除这个tlv字节数据，此方法可以正确的截取第一个完整的TLV数据包，能够解决TCP连接的粘包问题
+     * 这里我是用字节数据流来实现的，其实后来看了下NIO发现也能采用ByteBuffer,并且会在一定程度上提升写数据的效率，NIO的实现见{@link TLVFramer}
+     *
+     * @return 没有完整的TLV数据时返回null
+     * @throws IllegalStateException 第一个TLV没有通过校验
+     */
+    public synchronized byte[] cutNextTLVData() {
+        byte[] data = null;
+        if (hasNextTLVData()) {
+            data = Arrays.copyOfRange(buf, readPosition, readPosition + firstTotalSize);
+            if (TLVMetricsRegistry.ENABLED) {
+                TLVMetricsRegistry.getMetrics().onCopied(data.length);
+            }
+            readPosition += firstTotalSize;
+            firstTotalSize = 0;
+            if (readPosition == count) {
+                // 数据已经全部截取完，直接回到数组头部，避免之后的写入触发移动
+                readPosition = 0;
+                count = 0;
+            }
+        } else {
+            // 数据不完整是常态，调用方会轮询，不能直接打到标准错误
+            print("firstTotalSize:" + firstTotalSize + ",count:" + size() + ",firstTotalSize must smaller than count!");
+        }
+        return data;
+    }
+
+    /**
+     * 写入前检查剩余空间，不够时先把未读数据移动到数组头部，回收已经截取走的空间，仍然不够再由父类扩容
+     *
+     * @param len
+     */
+    private void ensureWritable(int len) {
+        if (readPosition > 0 && count + len > buf.length) {
+            int unread = count - readPosition;
+            System.arraycopy(buf, readPosition, buf, 0, unread);
+            count = unread;
+            readPosition = 0;
+            print("compact:" + unread);
+            if (TLVMetricsRegistry.ENABLED) {
+                TLVMetricsRegistry.getMetrics().onCompacted(unread);
+            }
+        }
+    }
+
+    /**
+     * 记录写入后的未读字节数，父类扩容时记录一次扩容
+     *
+     * @param oldBuf 写入之前的数组
+     * @param len    写入的字节数
+     */
+    private void recordWrite(byte[] oldBuf, int len) {
+        TLVMetrics metrics = TLVMetricsRegistry.getMetrics();
+        if (buf != oldBuf) {
+            metrics.onGrown(count - len);
+        }
+        metrics.onBuffered(count - readPosition);
+    }
+
+    private void compute() {
+        if (firstTotalSize == 0 && count > readPosition) {
+            if (validator == null) {
+                int totalSize = TLVDecoder.getTotalBytesSize(buf, readPosition, count);
+                if (totalSize < 0) {
+                    // 不能记录为firstTotalSize，否则之后不会再检查，缓冲区只会无限增长
+                    if (TLVMetricsRegistry.ENABLED) {
+                        TLVMetricsRegistry.getMetrics().onMalformed();
+                    }
+                    throw new IllegalStateException("tlv length is invalid");
+                }
+                firstTotalSize = totalSize;
+            } else {
+                // 只有完整并且通过校验的TLV才记录总字节数，不完整时下次重新检查
+                int result = validator.validate(buf, readPosition, count);
+                if (result < 0) {
+                    if (TLVMetricsRegistry.ENABLED) {
+                        TLVMetricsRegistry.getMetrics().onMalformed();
+                    }
+                    throw new IllegalStateException(TLVValidator.getErrorMessage(result));
+                }
+                firstTotalSize = result;
+            }
+            print("firstTotalSize:" + firstTotalSize);
+        }
+    }
+
+    private void print(String log) {
+        if (printLog) {
+            System.out.print(log);
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package tlv;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 基于{@link TLVTag}注解的POJO编解码器，第一次使用某个类时通过反射找出所有带注解的字段并生成MethodHandle，之后编解码不再反射：
+ * <pre>
+ * public class Login {
+ *     &#64;TLVTag(1) long uid;
+ *     &#64;TLVTag(2) String token;
+ * }
+ *
+ * TLVCodec&lt;Login&gt; codec = TLVCodec.of(Login.class);
+ * byte[] bytes = codec.encode(login);
+ * Login login = codec.decode(bytes);
+ * </pre>
+ * 编码结果的格式和用{@link TLVObject}逐个put相同：整数按{@link TLVUtils#longToByteArray(long)}的规则编码，
+ * 嵌套的POJO编码为{@link TLVEncoder#CONSTRUCTED_DATA}类型，值为null的字段不编码。字符串固定按UTF-8编码，
+ * 同{@link TLVWriter#putUtf8(int, CharSequence)}；{@link TLVObject#put(int, String)}使用平台默认编码，只有默认编码是UTF-8时两者的字节才相同。
+ * 编码时先计算长度再一次性写入，解码时直接在原始数组上按tagValue找到字段并赋值，都不构建{@link TLVObject}或{@link TLVDecodeResult}。
+ * <p/>
+ * 支持的字段类型：byte、short、int、long、boolean及其包装类型，String，byte[]，以及带{@link TLVTag}字段的POJO。
+ * POJO需要有无参构造方法，解码时没有出现的字段保持构造后的默认值。此类是线程安全的
+ */
+public final class TLVCodec<T> {
+
+    private static final ConcurrentMap<Class<?>, TLVCodec<?>> CODECS = new ConcurrentHashMap<Class<?>, TLVCodec<?>>();
+
+    /**
+     * 最大tagValue不超过这个值时按tagValue直接下标查找字段，否则二分查找
+     */
+    private static final int DIRECT_LOOKUP_LIMIT = 1024;
+
+    private static final int KIND_BYTE = 1;
+    private static final int KIND_SHORT = 2;
+    private static final int KIND_INT = 3;
+    private static final int KIND_LONG = 4;
+    private static final int KIND_BOOLEAN = 5;
+    private static final int KIND_NUMBER = 6;
+    private static final int KIND_BOXED_BOOLEAN = 7;
+    private static final int KIND_STRING = 8;
+    private static final int KIND_BYTES = 9;
+    private static final int KIND_NESTED = 10;
+
+    private final Class<T> type;
+
+    private final MethodHandle constructor;
+
+    /**
+     * 按tagValue排序的字段
+     */
+    private final FieldCodec[] fields;
+
+    private final int[] sortedTags;
+
+    /**
+     * 按tagValue直接查找字段的表，最大tagValue超过{@link #DIRECT_LOOKUP_LIMIT}时为null
+     */
+    private final FieldCodec[] fieldsByTag;
+
+    /**
+     * 获取type对应的编解码器，每个类只生成一次
+     *
+     * @param type
+     * @param <T>
+     * @return
+     * @throws IllegalArgumentException type没有带{@link TLVTag}的字段、没有无参构造方法或字段类型不支持
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> TLVCodec<T> of(Class<T> type) {
+        TLVCodec<?> codec = CODECS.get(type);
+        if (codec == null) {
+            codec = new TLVCodec<T>(type);
+            TLVCodec<?> old = CODECS.putIfAbsent(type, codec);
+            if (old != null) {
+                codec = old;
+            }
+        }
+        return (TLVCodec<T>) codec;
+    }
+
+    private TLVCodec(Class<T> type) {
+        this.type = type;
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            Constructor<T> c = type.getDeclaredConstructor();
+            c.setAccessible(true);
+            this.constructor = lookup.unreflectConstructor(c).asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getName() + " must have a no-arg constructor.", e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+
+        List<FieldCodec> list = new ArrayList<FieldCodec>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                TLVTag tag = field.getAnnotation(TLVTag.class);
+                if (tag == null || Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                if (tag.value() < 0) {
+                    throw new IllegalArgumentException("the tag value of " + field + " must not less than 0.");
+                }
+                list.add(new FieldCodec(lookup, field, tag.value()));
+            }
+        }
+        if (list.isEmpty()) {
+            throw new IllegalArgumentException(type.getName() + " has no field annotated with @TLVTag.");
+        }
+        fields = list.toArray(new FieldCodec[list.size()]);
+        Arrays.sort(fields, new Comparator<FieldCodec>() {
+            @Override
+            public int compare(FieldCodec o1, FieldCodec o2) {
+                return o1.tagValue < o2.tagValue ? -1 : (o1.tagValue == o2.tagValue ? 0 : 1);
+            }
+        });
+        sortedTags = new int[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0 && fields[i].tagValue == fields[i - 1].tagValue) {
+                throw new IllegalArgumentException("duplicate tag value " + fields[i].tagValue + " in " + type.getName());
+            }
+            sortedTags[i] = fields[i].tagValue;
+        }
+        int maxTag = sortedTags[sortedTags.length - 1];
+        if (maxTag < DIRECT_LOOKUP_LIMIT) {
+            fieldsByTag = new FieldCodec[maxTag + 1];
+            for (FieldCodec field : fields) {
+                fieldsByTag[field.tagValue] = field;
+            }
+        } else {
+            fieldsByTag = null;
+        }
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * 把对象编码为各个字段TLV依次排列的字节数组，和{@link TLVObject#toByteArray()}的格式相同，字符串按UTF-8编码
+     *
+     * @param object
+     * @return
+     */
+    public byte[] encode(T object) {
+        SizeStack sizes = new SizeStack();
+        byte[] bytes = new byte[computeSize(object, sizes)];
+        sizes.index = 0;
+        write(object, bytes, 0, sizes);
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onEncoded(bytes.length);
+        }
+        return bytes;
+    }
+
+    /**
+     * 把对象编码为一个{@link TLVEncoder#CONSTRUCTED_DATA}类型的TLV，Value是各个字段的TLV
+     *
+     * @param tagValue
+     * @param object
+     * @return
+     */
+    public byte[] encode(int tagValue, T object) {
+        SizeStack sizes = new SizeStack();
+        int valueSize = computeSize(object, sizes);
+        byte[] bytes = new byte[TLVEncoder.computeTagSize(tagValue) + TLVEncoder.computeLengthSize(valueSize) + valueSize];
+        int offset = TLVEncoder.writeTag(bytes, 0, TLVEncoder.PRIMITIVE_FRAME, TLVEncoder.CONSTRUCTED_DATA, tagValue);
+        offset += TLVEncoder.writeLength(bytes, offset, valueSize);
+        sizes.index = 0;
+        write(object, bytes, offset, sizes);
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onEncoded(bytes.length);
+        }
+        return bytes;
+    }
+
+    /**
+     * 解码{@link #encode(Object)}的结果
+     *
+     * @param bytes
+     * @return
+     * @throws IOException 数据格式错误
+     */
+    public T decode(byte[] bytes) throws IOException {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 解码字节数组中[offset, offset + length)范围内各个字段的TLV，不认识的tagValue会被跳过
+     *
+     * @param array
+     * @param offset
+     * @param length
+     * @return
+     * @throws IOException 数据格式错误
+     */
+    public T decode(byte[] array, int offset, int length) throws IOException {
+        T object = newInstance();
+        decodeFields(object, array, offset, offset + length);
+        return object;
+    }
+
+    /**
+     * 解码{@link #encode(int, Object)}的结果，即一个Constructed类型的TLV
+     *
+     * @param array
+     * @param offset
+     * @param length
+     * @return
+     * @throws IOException 数据格式错误
+     */
+    public T decodeConstructed(byte[] array, int offset, int length) throws IOException {
+        int limit = offset + length;
+        int tagBytesSize = TLVDecoder.getTagBytesSize(array, offset, limit);
+        int lengthBytesSize = tagBytesSize == 0 ? 0 : TLVDecoder.getLengthBytesSize(array, offset + tagBytesSize, limit);
+        if (lengthBytesSize == 0 || TLVDecoder.decodeDataType(array, offset) != TLVEncoder.CONSTRUCTED_DATA) {
+            throw new IOException("the data is not a constructed tlv.");
+        }
+        int valueOffset = offset + tagBytesSize + lengthBytesSize;
+        int valueSize = TLVDecoder.decodeLength(array, offset + tagBytesSize, lengthBytesSize);
+        if (valueSize < 0 || valueSize > limit - valueOffset) {
+            throw new IOException("tlv value is incomplete");
+        }
+        return decode(array, valueOffset, valueSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T newInstance() {
+        try {
+            return (T) constructor.invokeExact();
+        } catch (Throwable throwable) {
+            throw new IllegalStateException("can not create " + type.getName(), throwable);
+        }
+    }
+
+    private int computeSize(Object object, SizeStack sizes) {
+        int size = 0;
+        try {
+            for (FieldCodec field : fields) {
+                size += field.computeSize(object, sizes);
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+        return size;
+    }
+
+    private int write(Object object, byte[] dest, int offset, SizeStack sizes) {
+        try {
+            for (FieldCodec field : fields) {
+                offset = field.write(object, dest, offset, sizes);
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+        return offset;
+    }
+
+    private void decodeFields(Object object, byte[] array, int offset, int limit) throws IOException {
+        while (offset < limit) {
+            int tagBytesSize = TLVDecoder.getTagBytesSize(array, offset, limit);
+            int lengthBytesSize = tagBytesSize == 0 ? 0 : TLVDecoder.getLengthBytesSize(array, offset + tagBytesSize, limit);
+            if (lengthBytesSize == 0) {
+                throw new IOException("tlv header is incomplete at " + offset);
+            }
+            int valueOffset = offset + tagBytesSize + lengthBytesSize;
+            int valueSize = TLVDecoder.decodeLength(array, offset + tagBytesSize, lengthBytesSize);
+            if (valueSize < 0 || valueSize > limit - valueOffset) {
+                throw new IOException("tlv value is incomplete at " + offset);
+            }
+            FieldCodec field = findField(TLVDecoder.decodeTagValue(array, offset, tagBytesSize));
+            if (field != null) {
+                try {
+                    field.read(object, array, valueOffset, valueSize);
+                } catch (IOException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Throwable throwable) {
+                    throw new IllegalStateException(throwable);
+                }
+            }
+            offset = valueOffset + valueSize;
+        }
+    }
+
+    private FieldCodec findField(int tagValue) {
+        if (fieldsByTag != null) {
+            return tagValue >= 0 && tagValue < fieldsByTag.length ? fieldsByTag[tagValue] : null;
+        }
+        int i = Arrays.binarySearch(sortedTags, tagValue);
+        return i >= 0 ? fields[i] : null;
+    }
+
+    /**
+     * 编码时第一遍计算出来的嵌套POJO长度，按先序遍历的顺序记录，第二遍写入时按同样的顺序取出，避免重复计算
+     */
+    private static final class SizeStack {
+
+        int[] sizes = new int[4];
+
+        int count;
+
+        int index;
+
+        int add() {
+            if (count == sizes.length) {
+                sizes = Arrays.copyOf(sizes, count << 1);
+            }
+            return count++;
+        }
+
+        int next() {
+            return sizes[index++];
+        }
+    }
+
+    /**
+     * 单个字段的编解码，getter和setter都已经适配成精确的MethodType，调用时用invokeExact避免装箱
+     */
+    private static final class FieldCodec {
+
+        final int tagValue;
+
+        final int kind;
+
+        final Class<?> fieldType;
+
+        final MethodHandle getter;
+
+        final MethodHandle setter;
+
+        /**
+         * 嵌套POJO的编解码器，第一次使用时才获取，允许POJO引用自身类型
+         */
+        volatile TLVCodec<?> nested;
+
+        FieldCodec(MethodHandles.Lookup lookup, Field field, int tagValue) {
+            this.tagValue = tagValue;
+            this.fieldType = field.getType();
+            this.kind = kindOf(field);
+            field.setAccessible(true);
+            Class<?> exactType = kind <= KIND_BOOLEAN ? fieldType : Object.class;
+            try {
+                getter = lookup.unreflectGetter(field).asType(MethodType.methodType(exactType, Object.class));
+                setter = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, exactType));
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("can not access " + field, e);
+            }
+        }
+
+        private static int kindOf(Field field) {
+            Class<?> t = field.getType();
+            if (t == byte.class) {
+                return KIND_BYTE;
+            } else if (t == short.class) {
+                return KIND_SHORT;
+            } else if (t == int.class) {
+                return KIND_INT;
+            } else if (t == long.class) {
+                return KIND_LONG;
+            } else if (t == boolean.class) {
+                return KIND_BOOLEAN;
+            } else if (t == Byte.class || t == Short.class || t == Integer.class || t == Long.class) {
+                return KIND_NUMBER;
+            } else if (t == Boolean.class) {
+                return KIND_BOXED_BOOLEAN;
+            } else if (t == String.class) {
+                return KIND_STRING;
+            } else if (t == byte[].class) {
+                return KIND_BYTES;
+            } else if (!t.isPrimitive() && !t.isArray() && !t.isInterface()) {
+                return KIND_NESTED;
+            }
+            throw new IllegalArgumentException("unsupported field type: " + field);
+        }
+
+        private TLVCodec<?> nested() {
+            TLVCodec<?> codec = nested;
+            if (codec == null) {
+                codec = TLVCodec.of(fieldType);
+                nested = codec;
+            }
+            return codec;
+        }
+
+        private long getLong(Object object) throws Throwable {
+            switch (kind) {
+                case KIND_BYTE:
+                    return (byte) getter.invokeExact(object);
+                case KIND_SHORT:
+                    return (short) getter.invokeExact(object);
+                case KIND_INT:
+                    return (int) getter.invokeExact(object);
+                case KIND_LONG:
+                    return (long) getter.invokeExact(object);
+                default:
+                    return (boolean) getter.invokeExact(object) ? 1 : 0;
+            }
+        }
+
+        /**
+         * 计算字段编码后的字节数，值为null时返回0
+         */
+        int computeSize(Object object, SizeStack sizes) throws Throwable {
+            int valueSize;
+            if (kind <= KIND_BOOLEAN) {
+                valueSize = TLVUtils.computeLongSize(getLong(object));
+            } else {
+                Object value = (Object) getter.invokeExact(object);
+                if (value == null) {
+                    return 0;
+                }
+                switch (kind) {
+                    case KIND_NUMBER:
+                        valueSize = TLVUtils.computeLongSize(((Number) value).longValue());
+                        break;
+                    case KIND_BOXED_BOOLEAN:
+                        valueSize = 1;
+                        break;
+                    case KIND_STRING:
+                        valueSize = TLVUtils.computeUtf8Size((String) value);
+                        break;
+                    case KIND_BYTES:
+                        valueSize = ((byte[]) value).length;
+                        break;
+                    default:
+                        int slot = sizes.add();
+                        valueSize = nested().computeSize(value, sizes);
+                        sizes.sizes[slot] = valueSize;
+                        break;
+                }
+            }
+            return TLVEncoder.computeTagSize(tagValue) + TLVEncoder.computeLengthSize(valueSize) + valueSize;
+        }
+
+        int write(Object object, byte[] dest, int offset, SizeStack sizes) throws Throwable {
+            long number;
+            if (kind <= KIND_BOOLEAN) {
+                number = getLong(object);
+            } else {
+                Object value = (Object) getter.invokeExact(object);
+                if (value == null) {
+                    return offset;
+                }
+                switch (kind) {
+                    case KIND_NUMBER:
+                        number = ((Number) value).longValue();
+                        break;
+                    case KIND_BOXED_BOOLEAN:
+                        number = (Boolean) value ? 1 : 0;
+                        break;
+                    case KIND_STRING: {
+                        String s = (String) value;
+                        offset += TLVEncoder.writeTag(dest, offset, TLVEncoder.PRIMITIVE_FRAME, TLVEncoder.PRIMITIVE_DATA, tagValue);
+                        offset += TLVEncoder.writeLength(dest, offset, TLVUtils.computeUtf8Size(s));
+                        return offset + TLVUtils.writeUtf8(dest, offset, s);
+                    }
+                    case KIND_BYTES: {
+                        byte[] bytes = (byte[]) value;
+                        offset += TLVEncoder.writeTag(dest, offset, TLVEncoder.PRIMITIVE_FRAME, TLVEncoder.PRIMITIVE_DATA, tagValue);
+                        offset += TLVEncoder.writeLength(dest, offset, bytes.length);
+                        System.arraycopy(bytes, 0, dest, offset, bytes.length);
+                        return offset + bytes.length;
+                    }
+                    default: {
+                        offset += TLVEncoder.writeTag(dest, offset, TLVEncoder.PRIMITIVE_FRAME, TLVEncoder.CONSTRUCTED_DATA, tagValue);
+                        offset += TLVEncoder.writeLength(dest, offset, sizes.next());
+                        return nested().write(value, dest, offset, sizes);
+                    }
+                }
+            }
+            offset += TLVEncoder.writeTag(dest, offset, TLVEncoder.PRIMITIVE_FRAME, TLVEncoder.PRIMITIVE_DATA, tagValue);
+            offset += TLVEncoder.writeLength(dest, offset, TLVUtils.computeLongSize(number));
+            return offset + TLVUtils.writeLong(dest, offset, number);
+        }
+
+        void read(Object object, byte[] array, int offset, int length) throws Throwable {
+            switch (kind) {
+                case KIND_BYTE:
+                    setter.invokeExact(object, (byte) TLVUtils.byteArrayToLong(array, offset, length));
+                    break;
+                case KIND_SHORT:
+                    setter.invokeExact(object, (short) TLVUtils.byteArrayToLong(array, offset, length));
+                    break;
+                case KIND_INT:
+                    setter.invokeExact(object, (int) TLVUtils.byteArrayToLong(array, offset, length));
+                    break;
+                case KIND_LONG:
+                    setter.invokeExact(object, TLVUtils.byteArrayToLong(array, offset, length));
+                    break;
+                case KIND_BOOLEAN:
+                    setter.invokeExact(object, TLVUtils.byteArrayToLong(array, offset, length) != 0);
+                    break;
+                case KIND_NUMBER:
+                    setter.invokeExact(object, box(TLVUtils.byteArrayToLong(array, offset, length)));
+                    break;
+                case KIND_BOXED_BOOLEAN:
+                    setter.invokeExact(object, (Object) (TLVUtils.byteArrayToLong(array, offset, length) != 0));
+                    break;
+                case KIND_STRING:
+                    setter.invokeExact(object, (Object) TLVUtils.readUtf8(array, offset, length));
+                    break;
+                case KIND_BYTES:
+                    setter.invokeExact(object, (Object) Arrays.copyOfRange(array, offset, offset + length));
+                    break;
+                default:
+                    setter.invokeExact(object, (Object) nested().decode(array, offset, length));
+                    break;
+            }
+        }
+
+        private Object box(long value) {
+            if (fieldType == Byte.class) {
+                return (byte) value;
+            } else if (fieldType == Short.class) {
+                return (short) value;
+            } else if (fieldType == Integer.class) {
+                return (int) value;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package tlv;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * {@link TLVMetrics}的默认实现：计数器都是{@link LongAdder}，最大值用{@link LongAccumulator}，
+ * 解析耗时记录在{@link TLVHistogram}中，多个IO线程同时更新时没有锁也没有明显的缓存行竞争。
+ * 同时实现{@link TLVCodecMetricsMBean}，可以注册到JMX中，见{@link TLVMetricsRegistry#registerMBean(String, Object)}
+ */
+public class TLVCodecMetrics implements TLVMetrics, TLVCodecMetricsMBean {
+
+    private final LongAdder framesEncoded = new LongAdder();
+
+    private final LongAdder bytesEncoded = new LongAdder();
+
+    private final LongAdder framesDecoded = new LongAdder();
+
+    private final LongAdder bytesDecoded = new LongAdder();
+
+    private final LongAdder malformedFrames = new LongAdder();
+
+    private final LongAccumulator bufferHighWaterMark = new LongAccumulator(new LongBinaryOperator() {
+        @Override
+        public long applyAsLong(long left, long right) {
+            return Math.max(left, right);
+        }
+    }, 0);
+
+    private final LongAdder compactions = new LongAdder();
+
+    private final LongAdder growths = new LongAdder();
+
+    private final LongAdder bytesCopied = new LongAdder();
+
+    private final TLVHistogram decodeLatency = new TLVHistogram();
+
+    @Override
+    public void onEncoded(int bytes) {
+        framesEncoded.increment();
+        bytesEncoded.add(bytes);
+    }
+
+    @Override
+    public void onDecoded(int bytes, long nanos) {
+        framesDecoded.increment();
+        bytesDecoded.add(bytes);
+        decodeLatency.record(nanos);
+    }
+
+    @Override
+    public void onMalformed() {
+        malformedFrames.increment();
+    }
+
+    @Override
+    public void onBuffered(int bytes) {
+        // 绝大多数时候没有超过最大值，先读一次避免写共享的变量
+        if (bytes > bufferHighWaterMark.get()) {
+            bufferHighWaterMark.accumulate(bytes);
+        }
+    }
+
+    @Override
+    public void onCompacted(int bytes) {
+        compactions.increment();
+        bytesCopied.add(bytes);
+    }
+
+    @Override
+    public void onGrown(int bytes) {
+        growths.increment();
+        bytesCopied.add(bytes);
+    }
+
+    @Override
+    public void onCopied(int bytes) {
+        bytesCopied.add(bytes);
+    }
+
+    @Override
+    public long getFramesEncoded() {
+        return framesEncoded.sum();
+    }
+
+    @Override
+    public long getBytesEncoded() {
+        return bytesEncoded.sum();
+    }
+
+    @Override
+    public long getFramesDecoded() {
+        return framesDecoded.sum();
+    }
+
+    @Override
+    public long getBytesDecoded() {
+        return bytesDecoded.sum();
+    }
+
+    @Override
+    public long getMalformedFrames() {
+        return malformedFrames.sum();
+    }
+
+    @Override
+    public long getBufferHighWaterMark() {
+        return bufferHighWaterMark.get();
+    }
+
+    @Override
+    public long getCompactions() {
+        return compactions.sum();
+    }
+
+    @Override
+    public long getGrowths() {
+        return growths.sum();
+    }
+
+    @Override
+    public long getBytesCopied() {
+        return bytesCopied.sum();
+    }
+
+    @Override
+    public long getDecodeLatencyMean() {
+        return decodeLatency.getMean();
+    }
+
+    @Override
+    public long getDecodeLatencyP50() {
+        return decodeLatency.getPercentile(0.5);
+    }
+
+    @Override
+    public long getDecodeLatencyP99() {
+        return decodeLatency.getPercentile(0.99);
+    }
+
+    @Override
+    public long getDecodeLatencyP999() {
+        return decodeLatency.getPercentile(0.999);
+    }
+
+    @Override
+    public long[] getDecodeLatencyBuckets() {
+        return decodeLatency.getBucketCounts();
+    }
+
+    public TLVHistogram getDecodeLatency() {
+        return decodeLatency;
+    }
+
+    @Override
+    public void reset() {
+        framesEncoded.reset();
+        bytesEncoded.reset();
+        framesDecoded.reset();
+        bytesDecoded.reset();
+        malformedFrames.reset();
+        bufferHighWaterMark.reset();
+        compactions.reset();
+        growths.reset();
+        bytesCopied.reset();
+        decodeLatency.reset();
+    }
+}
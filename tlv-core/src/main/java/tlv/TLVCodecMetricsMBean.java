@@ -0,0 +1,65 @@
+package tlv;
+
+/**
+ * {@link TLVCodecMetrics}通过JMX暴露的属性和操作，耗时的单位都是纳秒
+ */
+public interface TLVCodecMetricsMBean {
+
+    long getFramesEncoded();
+
+    long getBytesEncoded();
+
+    long getFramesDecoded();
+
+    long getBytesDecoded();
+
+    long getMalformedFrames();
+
+    /**
+     * 分帧缓冲区中未截取数据的最大字节数
+     *
+     * @return
+     */
+    long getBufferHighWaterMark();
+
+    /**
+     * 分帧缓冲区把未读数据移动到头部的次数，不包括扩容
+     *
+     * @return
+     */
+    long getCompactions();
+
+    /**
+     * 分帧缓冲区扩容的次数
+     *
+     * @return
+     */
+    long getGrowths();
+
+    /**
+     * 分帧缓冲区移动数据、扩容和截取TLV时复制的总字节数
+     *
+     * @return
+     */
+    long getBytesCopied();
+
+    long getDecodeLatencyMean();
+
+    long getDecodeLatencyP50();
+
+    long getDecodeLatencyP99();
+
+    long getDecodeLatencyP999();
+
+    /**
+     * 解析耗时直方图各个桶的计数，桶的范围见{@link TLVHistogram}
+     *
+     * @return
+     */
+    long[] getDecodeLatencyBuckets();
+
+    /**
+     * 所有指标清零
+     */
+    void reset();
+}
@@ -0,0 +1,289 @@
+package tlv;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 可选的TLV压缩层：超过阈值的最外层TLV整体用Deflate压缩后，包装成一个tagValue为{@link #COMPRESSED_TAG}的私有类型TLV，
+ * 包装后仍然是普通的TLV，{@link TLVByteBuffer}等分帧逻辑不需要任何改动。接收方截取出TLV后调用{@link #decompress(byte[])}
+ * 或{@link #decode(byte[])}，没有压缩的TLV原样返回，因此压缩和不压缩的TLV可以混在同一个连接中。
+ * <p/>
+ * 包装后的Value由原始TLV的字节数（编码方式和Length相同）和Deflate数据（不带zlib头）组成。
+ * 每个线程复用自己的Deflater、Inflater和输出缓冲区，同一个TLVCompressor可以在多个线程中同时使用
+ * <p/>
+ * {@link TLVDecoder}本身不识别压缩，把包装后的TLV当作普通的私有类型TLV解析，Value是压缩数据。
+ * 需要自动解压时给{@link TLVFrameReader}或{@link TLVReactor}传入TLVCompressor，它们在解析之前调用
+ * {@link #decode(byte[], int, int, TLVValidator)}；直接解析字节数组时用{@link #decode(byte[])}代替{@link TLVDecoder#decode(byte[])}
+ */
+public class TLVCompressor {
+
+    /**
+     * 压缩后的TLV的tagValue，和{@link TLVEncoder#PRIVATE_FRAME}、{@link TLVEncoder#PRIMITIVE_DATA}一起组成保留的Tag，业务消息不能使用
+     */
+    public static final int COMPRESSED_TAG = 0x3fff;
+
+    /**
+     * 默认的压缩阈值，更小的TLV压缩效果有限，不值得花费CPU
+     */
+    public static final int DEFAULT_THRESHOLD = 512;
+
+    /**
+     * 默认允许解压出的最大字节数，防止很小的数据解压出巨大的内容
+     */
+    public static final int DEFAULT_MAX_DECOMPRESSED_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * 解压时输出数组的初始大小至少是压缩数据字节数的这个倍数，之后随解压进度加倍，直到声明的原始字节数
+     */
+    private static final int INITIAL_INFLATE_RATIO = 4;
+
+    /**
+     * 输出缓冲区保留的最大字节数，更大的缓冲区用完后丢弃，避免长期占用内存
+     */
+    private static final int MAX_RETAINED_BUFFER_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<Context> CONTEXT = new ThreadLocal<Context>() {
+        @Override
+        protected Context initialValue() {
+            return new Context();
+        }
+    };
+
+    private final int threshold;
+
+    private final int level;
+
+    private final int maxDecompressedSize;
+
+    public TLVCompressor() {
+        this(DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION, DEFAULT_MAX_DECOMPRESSED_SIZE);
+    }
+
+    /**
+     * @param threshold           TLV的总字节数不小于这个值时才压缩
+     * @param level               Deflate压缩级别，见{@link Deflater#setLevel(int)}
+     * @param maxDecompressedSize 允许解压出的最大字节数
+     */
+    public TLVCompressor(int threshold, int level, int maxDecompressedSize) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("the threshold must not be negative.");
+        }
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("invalid compression level: " + level);
+        }
+        if (maxDecompressedSize <= 0) {
+            throw new IllegalArgumentException("the max decompressed size must be greater than 0.");
+        }
+        this.threshold = threshold;
+        this.level = level;
+        this.maxDecompressedSize = maxDecompressedSize;
+    }
+
+    /**
+     * 编码并压缩TLV对象，见{@link #compress(byte[])}
+     *
+     * @param tlvObject
+     * @return
+     */
+    public byte[] compress(TLVObject tlvObject) {
+        return compress(tlvObject.toByteArray());
+    }
+
+    /**
+     * 压缩一个或多个首尾相连的完整TLV
+     *
+     * @param tlvBytes
+     * @return 压缩后的TLV；小于阈值或者压缩后没有变小时直接返回tlvBytes
+     */
+    public byte[] compress(byte[] tlvBytes) {
+        int length = tlvBytes.length;
+        if (length < threshold || length == 0) {
+            return tlvBytes;
+        }
+        int sizeBytes = TLVEncoder.computeLengthSize(length);
+        Context context = CONTEXT.get();
+        byte[] buf = context.buffer(length);
+        Deflater deflater = context.deflater;
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setInput(tlvBytes, 0, length);
+        deflater.finish();
+        // 压缩后的数据加上包装的Tag、Length和原始字节数之后必须比原来小，否则放弃压缩
+        int limit = length - TLVEncoder.computeTagSize(COMPRESSED_TAG) - TLVEncoder.computeLengthSize(length) - sizeBytes;
+        int compressedSize = 0;
+        while (!deflater.finished()) {
+            if (compressedSize >= limit) {
+                context.release();
+                return tlvBytes;
+            }
+            compressedSize += deflater.deflate(buf, compressedSize, limit - compressedSize);
+        }
+        int valueSize = sizeBytes + compressedSize;
+        int tagSize = TLVEncoder.computeTagSize(COMPRESSED_TAG);
+        byte[] result = new byte[tagSize + TLVEncoder.computeLengthSize(valueSize) + valueSize];
+        int offset = TLVEncoder.writeTag(result, 0, TLVEncoder.PRIVATE_FRAME, TLVEncoder.PRIMITIVE_DATA, COMPRESSED_TAG);
+        offset += TLVEncoder.writeLength(result, offset, valueSize);
+        offset += TLVEncoder.writeLength(result, offset, length);
+        System.arraycopy(buf, 0, result, offset, compressedSize);
+        context.release();
+        return result;
+    }
+
+    /**
+     * 判断从offset开始的TLV是否是{@link #compress(byte[])}压缩后的TLV
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static boolean isCompressed(byte[] bytes, int offset, int length) {
+        int limit = offset + length;
+        int tagBytesSize = TLVDecoder.getTagBytesSize(bytes, offset, limit);
+        return tagBytesSize > 0
+                && TLVDecoder.decodeFrameType(bytes, offset) == TLVEncoder.PRIVATE_FRAME
+                && TLVDecoder.decodeDataType(bytes, offset) == TLVEncoder.PRIMITIVE_DATA
+                && TLVDecoder.decodeTagValue(bytes, offset, tagBytesSize) == COMPRESSED_TAG;
+    }
+
+    /**
+     * 解压一个由{@link TLVByteBuffer#cutNextTLVData()}等截取出来的完整TLV
+     *
+     * @param tlvBytes
+     * @return 原始TLV；没有压缩时直接返回tlvBytes
+     * @throws IOException 压缩数据不完整、损坏或者超过允许的最大字节数
+     */
+    public byte[] decompress(byte[] tlvBytes) throws IOException {
+        if (!isCompressed(tlvBytes, 0, tlvBytes.length)) {
+            return tlvBytes;
+        }
+        return decompress(tlvBytes, 0, tlvBytes.length);
+    }
+
+    /**
+     * 解压字节数组中[offset, offset + length)范围内的TLV
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return 原始TLV；没有压缩时返回这个范围内数据的副本
+     * @throws IOException 压缩数据不完整、损坏或者超过允许的最大字节数
+     */
+    public byte[] decompress(byte[] bytes, int offset, int length) throws IOException {
+        int limit = offset + length;
+        if (!isCompressed(bytes, offset, length)) {
+            byte[] copy = new byte[length];
+            System.arraycopy(bytes, offset, copy, 0, length);
+            return copy;
+        }
+        int position = offset + TLVDecoder.getTagBytesSize(bytes, offset, limit);
+        int lengthBytesSize = TLVDecoder.getLengthBytesSize(bytes, position, limit);
+        if (lengthBytesSize == 0) {
+            throw new IOException("tlv length is incomplete");
+        }
+        int valueSize = TLVDecoder.decodeLength(bytes, position, lengthBytesSize);
+        position += lengthBytesSize;
+        if (valueSize < 0 || valueSize > limit - position) {
+            throw new IOException("tlv value is incomplete");
+        }
+        int valueLimit = position + valueSize;
+        int sizeBytes = TLVDecoder.getLengthBytesSize(bytes, position, valueLimit);
+        if (sizeBytes == 0) {
+            throw new IOException("compressed tlv is corrupted");
+        }
+        int originalSize = TLVDecoder.decodeLength(bytes, position, sizeBytes);
+        position += sizeBytes;
+        if (originalSize < 0 || originalSize > maxDecompressedSize) {
+            throw new IOException("decompressed tlv size " + originalSize + " exceeds the limit " + maxDecompressedSize);
+        }
+        // 原始字节数来自对方，不能直接按它分配内存，输出数组随实际解压出的数据增长
+        int compressedSize = valueLimit - position;
+        int initialSize = (int) Math.min(originalSize, Math.max(4096L, (long) compressedSize * INITIAL_INFLATE_RATIO));
+        byte[] result = new byte[initialSize];
+        Inflater inflater = CONTEXT.get().inflater;
+        inflater.reset();
+        inflater.setInput(bytes, position, compressedSize);
+        int n = 0;
+        try {
+            while (n < originalSize && !inflater.finished()) {
+                if (n == result.length) {
+                    result = Arrays.copyOf(result, (int) Math.min(originalSize, (long) result.length << 1));
+                }
+                int inflated = inflater.inflate(result, n, result.length - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("compressed tlv is corrupted", e);
+        }
+        if (n != originalSize || !inflater.finished()) {
+            throw new IOException("compressed tlv is corrupted");
+        }
+        return result;
+    }
+
+    /**
+     * 解压后解析TLV，没有压缩的TLV直接解析
+     *
+     * @param tlvBytes
+     * @return
+     * @throws IOException
+     */
+    public TLVDecodeResult decode(byte[] tlvBytes) throws IOException {
+        return decode(tlvBytes, 0, tlvBytes.length, null);
+    }
+
+    /**
+     * 解析[offset, offset + length)范围内的一个完整TLV，压缩过的先解压。没有压缩时直接在原始数组上解析，不复制
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @param validator 校验解压出的TLV，为null时不校验；解压之前的包装TLV需要调用者自己校验
+     * @return
+     * @throws IOException 解压失败、解压出的TLV没有通过校验或者解析出错
+     */
+    public TLVDecodeResult decode(byte[] bytes, int offset, int length, TLVValidator validator) throws IOException {
+        if (!isCompressed(bytes, offset, length)) {
+            return TLVDecoder.decode(bytes, offset, length);
+        }
+        byte[] original = decompress(bytes, offset, length);
+        if (validator != null) {
+            validator.check(original, 0, original.length);
+        }
+        return TLVDecoder.decode(original, 0, original.length);
+    }
+
+    /**
+     * 每个线程复用的压缩上下文
+     */
+    private static class Context {
+
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        final Inflater inflater = new Inflater(true);
+
+        private byte[] buffer = new byte[4096];
+
+        byte[] buffer(int size) {
+            if (buffer.length < size) {
+                buffer = new byte[Math.max(size, buffer.length << 1)];
+            }
+            return buffer;
+        }
+
+        /**
+         * 用完后丢弃过大的输出缓冲区
+         */
+        void release() {
+            if (buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+                buffer = new byte[4096];
+            }
+        }
+    }
+}
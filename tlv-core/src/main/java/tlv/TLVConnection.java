@@ -0,0 +1,230 @@
+package tlv;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link TLVReactor}管理的一个连接。读到的数据由内部的{@link TLVFramer}分帧后交给{@link TLVHandler#onFrame(TLVConnection, TLVDecodeResult)}，
+ * 发送的数据先进入发送队列，由反应器线程在连接可写时写出，写不完时才关注OP_WRITE。
+ * 收到的TLV没有通过{@link TLVValidator}校验时立即关闭连接，原因通过{@link TLVHandler#onClose(TLVConnection, Throwable)}传给handler。
+ * {@link #send(TLVObject)}和{@link #close()}可以在任意线程中调用
+ */
+public class TLVConnection {
+
+    /**
+     * 一次集中写出的最多缓冲区个数
+     */
+    private static final int MAX_GATHER = 16;
+
+    private final TLVReactor reactor;
+
+    private final SocketChannel channel;
+
+    private final TLVFramer framer;
+
+    private final TLVValidator validator;
+
+    private final TLVCompressor compressor;
+
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    /**
+     * 是否已经提交了写出任务，避免每次send都唤醒反应器线程
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled.set(false);
+            flush();
+        }
+    };
+
+    private SelectionKey key;
+
+    private volatile boolean open = true;
+
+    private volatile Object attachment;
+
+    TLVConnection(TLVReactor reactor, SocketChannel channel, TLVValidator validator, TLVCompressor compressor) {
+        this.reactor = reactor;
+        this.channel = channel;
+        this.framer = new TLVFramer(TLVFramer.DEFAULT_CAPACITY, false, validator);
+        this.validator = validator;
+        this.compressor = compressor;
+    }
+
+    /**
+     * 发送一个TLV对象，见{@link #send(byte[])}
+     *
+     * @param tlvObject
+     */
+    public void send(TLVObject tlvObject) {
+        send(tlvObject.toByteArray());
+    }
+
+    /**
+     * 把一个或多个完整的TLV加入发送队列，调用者之后不能再修改tlvBytes。连接已经关闭时直接丢弃
+     *
+     * @param tlvBytes
+     */
+    public void send(byte[] tlvBytes) {
+        if (!open) {
+            return;
+        }
+        outbound.add(ByteBuffer.wrap(tlvBytes));
+        if (flushScheduled.compareAndSet(false, true)) {
+            reactor.execute(flushTask);
+        }
+    }
+
+    /**
+     * 关闭连接，发送队列中还没有写出的数据会被丢弃
+     */
+    public void close() {
+        reactor.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeNow(null);
+            }
+        });
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public SocketAddress getRemoteAddress() {
+        return channel.socket().getRemoteSocketAddress();
+    }
+
+    public SocketAddress getLocalAddress() {
+        return channel.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * 调用者关联到连接上的对象，例如会话状态
+     *
+     * @return
+     */
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * 连接可读时由反应器线程调用：读一次数据，把所有完整的TLV交给handler
+     */
+    void read(TLVHandler handler) {
+        try {
+            int n = framer.readFrom(channel);
+            ByteBuffer frame;
+            while (open && (frame = framer.nextFrame()) != null) {
+                handler.onFrame(this, decode(frame));
+            }
+            if (n < 0) {
+                closeNow(null);
+            }
+        } catch (Throwable e) {
+            closeNow(e);
+        }
+    }
+
+    /**
+     * 解析一个完整的TLV，设置了压缩器时先解压。framer使用堆内缓冲区，截取出的TLV一定有底层数组
+     */
+    private TLVDecodeResult decode(ByteBuffer frame) throws IOException {
+        if (compressor == null) {
+            return TLVDecoder.decode(frame);
+        }
+        return compressor.decode(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining(), validator);
+    }
+
+    /**
+     * 由反应器线程调用：尽量写出发送队列中的数据，写不完时关注OP_WRITE，写完后取消关注
+     */
+    void flush() {
+        if (!open || key == null || !channel.isConnected()) {
+            return;
+        }
+        try {
+            while (true) {
+                int count = 0;
+                for (ByteBuffer buffer : outbound) {
+                    gather[count++] = buffer;
+                    if (count == MAX_GATHER) {
+                        break;
+                    }
+                }
+                if (count == 0) {
+                    break;
+                }
+                channel.write(gather, 0, count);
+                int written = 0;
+                while (written < count && !gather[written].hasRemaining()) {
+                    outbound.poll();
+                    written++;
+                }
+                for (int i = 0; i < count; i++) {
+                    gather[i] = null;
+                }
+                if (written < count) {
+                    // socket发送缓冲区已满
+                    break;
+                }
+            }
+            int ops = key.interestOps();
+            if (outbound.isEmpty()) {
+                if ((ops & SelectionKey.OP_WRITE) != 0) {
+                    key.interestOps(ops & ~SelectionKey.OP_WRITE);
+                }
+            } else if ((ops & SelectionKey.OP_WRITE) == 0) {
+                key.interestOps(ops | SelectionKey.OP_WRITE);
+            }
+        } catch (Throwable e) {
+            closeNow(e);
+        }
+    }
+
+    /**
+     * 由反应器线程调用：关闭连接并通知handler
+     *
+     * @param cause
+     */
+    void closeNow(Throwable cause) {
+        if (!open) {
+            return;
+        }
+        open = false;
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // 忽略关闭时的异常
+        }
+        outbound.clear();
+        reactor.closed(this, cause);
+    }
+}
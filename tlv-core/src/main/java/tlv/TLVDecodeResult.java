@@ -0,0 +1,379 @@
+package tlv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TLV解码结果
+ * <p/>
+ * Created by lhd on 2015/09/26.
+ */
+public class TLVDecodeResult {
+
+    private int frameType;
+
+    private int dataType;
+
+    private int tagValue;
+
+    private int length;
+
+    /**
+     * <p>
+     * TLV中的Value的具体值，只可能存在两种类型：
+     * </p>
+     * <p>
+     * 1.{@link #dataType}=0x20的时候是List<{@link TLVDecodeResult}>类型
+     * </p>
+     * <p>
+     * 2.{@link #dataType}=0x00的时候是byte[]类型
+     * </p>
+     */
+    private Object value;
+
+    /**
+     * 零拷贝解码时Value所在的原始字节数组，此时{@link #value}为null，需要byte[]时才从这里复制出来；
+     * 延迟解码的Constructed类型也记录在这里，第一次访问时才解析出子TLV列表
+     */
+    private byte[] valueArray;
+
+    /**
+     * 零拷贝解码direct ByteBuffer时Value所在的原始ByteBuffer
+     */
+    private ByteBuffer valueBuffer;
+
+    /**
+     * Value在{@link #valueArray}或{@link #valueBuffer}中的起始下标，长度即{@link #length}
+     */
+    private int valueOffset;
+
+    /**
+     * 第一次调用{@link #getLongValue()}后缓存的结果，之后直接返回
+     */
+    private long longValue;
+
+    private boolean longValueParsed;
+
+    /**
+     * 第一次调用{@link #getStringValue()}后缓存的结果
+     */
+    private String stringValue;
+
+    /**
+     * 第一次调用{@link #getUtf8StringValue()}后缓存的结果
+     */
+    private String utf8StringValue;
+
+    /**
+     * 子TLV按tagValue建立的索引，第一次按tagValue查找时才建立
+     */
+    private TLVTagIndex tagIndex;
+
+    /**
+     * 获取第一个tagValue匹配的子TLV，子TLV较多时按索引二分查找，耗时不随子TLV数量线性增长
+     *
+     * @param tagValue
+     * @return 不存在时返回null
+     */
+    public TLVDecodeResult getResultByTagValue(int tagValue) {
+        TLVDecodeResult result = null;
+        if (dataType == TLVEncoder.CONSTRUCTED_DATA) {
+            List<TLVDecodeResult> list = children();
+            if (list == null) {
+                return null;
+            }
+            if (list.size() <= TLVTagIndex.LINEAR_SCAN_THRESHOLD) {
+                for (TLVDecodeResult r : list) {
+                    if (r.getTagValue() == tagValue) {
+                        result = r;
+                        break;
+                    }
+                }
+            } else {
+                TLVTagIndex index = getTagIndex(list);
+                int i = index.first(tagValue);
+                if (i >= 0) {
+                    result = list.get(index.positionAt(i));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取所有tagValue匹配的子TLV，按在Value中出现的先后顺序排列
+     *
+     * @param tagValue
+     * @return 不存在时返回空列表
+     */
+    public List<TLVDecodeResult> getResultsByTagValue(int tagValue) {
+        List<TLVDecodeResult> results = new ArrayList<TLVDecodeResult>();
+        if (dataType == TLVEncoder.CONSTRUCTED_DATA) {
+            List<TLVDecodeResult> list = children();
+            if (list == null) {
+                return results;
+            }
+            if (list.size() <= TLVTagIndex.LINEAR_SCAN_THRESHOLD) {
+                for (TLVDecodeResult r : list) {
+                    if (r.getTagValue() == tagValue) {
+                        results.add(r);
+                    }
+                }
+            } else {
+                TLVTagIndex index = getTagIndex(list);
+                for (int i = index.first(tagValue); i >= 0 && i < index.size() && index.tagAt(i) == tagValue; i++) {
+                    results.add(list.get(index.positionAt(i)));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Constructed类型的Value是子TLV列表，需要时才解析
+     *
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    private List<TLVDecodeResult> children() {
+        return (List<TLVDecodeResult>) getValue();
+    }
+
+    private TLVTagIndex getTagIndex(List<TLVDecodeResult> list) {
+        // 子TLV列表被外部修改过时重建索引
+        if (tagIndex == null || tagIndex.size() != list.size()) {
+            tagIndex = TLVTagIndex.build(list);
+        }
+        return tagIndex;
+    }
+
+    /**
+     * 获取int类型的值
+     *
+     * @return
+     */
+    public int getIntValue() {
+        return (int) getLongValue();
+    }
+
+    /**
+     * 获取long类型的值，只在第一次调用时解析，之后返回缓存的结果
+     *
+     * @return
+     */
+    public long getLongValue() {
+        if (longValueParsed) {
+            return longValue;
+        }
+        long result = 0L;
+        if (value instanceof byte[]) {
+            result = TLVUtils.byteArrayToLong((byte[]) value);
+        } else if (dataType == TLVEncoder.CONSTRUCTED_DATA) {
+            // Constructed类型没有基本类型的值
+        } else if (valueArray != null) {
+            result = TLVUtils.byteArrayToLong(valueArray, valueOffset, length);
+        } else if (valueBuffer != null) {
+            result = TLVUtils.byteBufferToLong(valueBuffer, valueOffset, length);
+        }
+        longValue = result;
+        longValueParsed = true;
+        return result;
+    }
+
+    /**
+     * 获取String类型的值，使用平台默认编码，只在第一次调用时创建，之后返回缓存的结果
+     *
+     * @return
+     */
+    public String getStringValue() {
+        if (stringValue != null) {
+            return stringValue;
+        }
+        String strValue = null;
+        if (value instanceof byte[]) {
+            strValue = new String((byte[]) value);
+        } else if (dataType == TLVEncoder.CONSTRUCTED_DATA) {
+            // Constructed类型没有基本类型的值
+        } else if (valueArray != null) {
+            strValue = new String(valueArray, valueOffset, length);
+        } else if (valueBuffer != null) {
+            strValue = Charset.defaultCharset().decode(getValueBuffer()).toString();
+        }
+        stringValue = strValue;
+        return strValue;
+    }
+
+    /**
+     * 按UTF-8获取String类型的值，不依赖平台默认编码，纯ASCII内容走快速路径，只在第一次调用时创建，之后返回缓存的结果
+     *
+     * @return
+     */
+    public String getUtf8StringValue() {
+        if (utf8StringValue != null) {
+            return utf8StringValue;
+        }
+        String strValue = null;
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            strValue = TLVUtils.readUtf8(bytes, 0, bytes.length);
+        } else if (dataType == TLVEncoder.CONSTRUCTED_DATA) {
+            // Constructed类型没有基本类型的值
+        } else if (valueArray != null) {
+            strValue = TLVUtils.readUtf8(valueArray, valueOffset, length);
+        } else if (valueBuffer != null) {
+            strValue = TLVUtils.UTF_8.decode(getValueBuffer()).toString();
+        }
+        utf8StringValue = strValue;
+        return strValue;
+    }
+
+    /**
+     * 获取Value的ByteBuffer视图，不复制Value的内容，只对{@link TLVEncoder#PRIMITIVE_DATA}类型和延迟解码的Constructed类型有效
+     *
+     * @return
+     */
+    public ByteBuffer getValueBuffer() {
+        ByteBuffer buffer = null;
+        if (value instanceof byte[]) {
+            buffer = ByteBuffer.wrap((byte[]) value);
+        } else if (valueArray != null) {
+            buffer = ByteBuffer.wrap(valueArray, valueOffset, length).slice();
+        } else if (valueBuffer != null) {
+            buffer = valueBuffer.duplicate();
+            buffer.limit(valueOffset + length);
+            buffer.position(valueOffset);
+            buffer = buffer.slice();
+        }
+        return buffer;
+    }
+
+    /**
+     * 零拷贝解码时Value所在的原始字节数组，配合{@link #getValueOffset()}和{@link #getLength()}使用
+     *
+     * @return
+     */
+    public byte[] getValueArray() {
+        return valueArray;
+    }
+
+    public int getValueOffset() {
+        return valueOffset;
+    }
+
+    /**
+     * 记录Value在原始字节数组中的位置，由{@link TLVDecoder}零拷贝解码时调用
+     *
+     * @param array
+     * @param offset
+     */
+    void setValueRange(byte[] array, int offset) {
+        this.valueArray = array;
+        this.valueBuffer = null;
+        this.valueOffset = offset;
+    }
+
+    /**
+     * 记录Value在原始ByteBuffer中的位置，由{@link TLVDecoder}零拷贝解码时调用
+     *
+     * @param buffer
+     * @param offset
+     */
+    void setValueRange(ByteBuffer buffer, int offset) {
+        this.valueArray = null;
+        this.valueBuffer = buffer;
+        this.valueOffset = offset;
+    }
+
+    public int getFrameType() {
+        return frameType;
+    }
+
+    public void setFrameType(int frameType) {
+        this.frameType = frameType;
+    }
+
+    public int getDataType() {
+        return dataType;
+    }
+
+    public void setDataType(int dataType) {
+        this.dataType = dataType;
+    }
+
+    public int getTagValue() {
+        return tagValue;
+    }
+
+    public void setTagValue(int tagValue) {
+        this.tagValue = tagValue;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public void setLength(int length) {
+        this.length = length;
+    }
+
+    /**
+     * 获取Value，延迟解码的Constructed类型在第一次调用时解析子TLV，此过程不是线程安全的，
+     * 多线程共享同一个延迟解码结果时需要调用者自行同步
+     *
+     * @return
+     */
+    public Object getValue() {
+        if (value == null && (valueArray != null || valueBuffer != null)) {
+            if (dataType == TLVEncoder.CONSTRUCTED_DATA) {
+                value = decodeChildren();
+            } else {
+                // 只有真正需要byte[]的时候才复制一次，之后复用
+                byte[] bytes = new byte[length];
+                getValueBuffer().get(bytes);
+                value = bytes;
+            }
+        }
+        return value;
+    }
+
+    private List<TLVDecodeResult> decodeChildren() {
+        try {
+            if (valueArray != null) {
+                return TLVDecoder.decodeChildren(valueArray, valueOffset, valueOffset + length);
+            }
+            return TLVDecoder.decodeChildren(valueBuffer, valueOffset, valueOffset + length);
+        } catch (IOException e) {
+            // 延迟解码时Value的边界已经校验过，不完整的子TLV会被忽略，正常情况下不会走到这里
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void setValue(Object value) {
+        this.value = value;
+        this.tagIndex = null;
+        this.longValueParsed = false;
+        this.stringValue = null;
+        this.utf8StringValue = null;
+        this.valueArray = null;
+        this.valueBuffer = null;
+    }
+
+    @Override
+    public String toString() {
+        String v = null;
+        if (dataType == TLVEncoder.CONSTRUCTED_DATA) {
+            Object list = getValue();
+            v = list != null ? list.toString() : null;
+        } else {
+            v = Arrays.toString((byte[]) getValue());
+        }
+        return "TLVDecodeResult [frameType=" + frameType + ", dataType="
+                + dataType + ", tagValue=" + tagValue + ", length=" + length
+                + ", value=" + v + "]";
+    }
+
+}
@@ -0,0 +1,849 @@
+package tlv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TLV解码实现
+ * <p/>
+ * Created by lhd on 2015/09/26.
+ */
+public class TLVDecoder {
+
+    private static boolean printLog = false;
+
+    /**
+     * 解析TLV字节数组
+     *
+     * @param tlvBytes
+     * @return
+     */
+    public static TLVDecodeResult decode(byte[] tlvBytes) throws Throwable {
+        if (tlvBytes == null) {
+            return null;
+        }
+        return decode(tlvBytes, 0, tlvBytes.length);
+    }
+
+    /**
+     * 零拷贝解析字节数组中[offset, offset + length)范围内的TLV，解析结果中的Value直接指向原始数组，不再复制，
+     * 因此在使用解析结果期间不能修改原始数组的内容。
+     * 只解析第一个TLV，之后多余的数据被忽略；来自不可信来源的数据应当先用{@link TLVValidator}校验
+     *
+     * @param array  原始字节数组
+     * @param offset TLV起始下标
+     * @param length TLV数据长度
+     * @return
+     */
+    public static TLVDecodeResult decode(byte[] array, int offset, int length) throws IOException {
+        if (array == null || length == 0) {
+            return null;
+        }
+        return decodeTop(array, offset, offset + length, false);
+    }
+
+    /**
+     * 零拷贝解析ByteBuffer中position到limit之间的TLV，不改变ByteBuffer的position和limit。
+     * 堆内ByteBuffer直接按其底层数组解析，direct ByteBuffer的解析结果指向原ByteBuffer
+     *
+     * @param buffer
+     * @return
+     */
+    public static TLVDecodeResult decode(ByteBuffer buffer) throws IOException {
+        if (buffer == null || !buffer.hasRemaining()) {
+            return null;
+        }
+        if (buffer.hasArray()) {
+            return decodeTop(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.arrayOffset() + buffer.limit(), false);
+        }
+        return decodeTop(buffer, buffer.position(), buffer.limit(), false);
+    }
+
+    /**
+     * 延迟解析TLV字节数组：只解析最外层TLV的Tag和Length，Constructed类型的子TLV在第一次调用
+     * {@link TLVDecodeResult#getValue()}或{@link TLVDecodeResult#getResultByTagValue(int)}时才解析，
+     * 解析出来的子TLV同样是延迟解析的。适合只读取少量字段的场景，未访问的子树不会产生任何解析开销
+     *
+     * @param tlvBytes
+     * @return
+     */
+    public static TLVDecodeResult decodeLazy(byte[] tlvBytes) throws IOException {
+        if (tlvBytes == null) {
+            return null;
+        }
+        return decodeLazy(tlvBytes, 0, tlvBytes.length);
+    }
+
+    /**
+     * 延迟解析字节数组中[offset, offset + length)范围内的TLV，见{@link #decodeLazy(byte[])}
+     *
+     * @param array
+     * @param offset
+     * @param length
+     * @return
+     */
+    public static TLVDecodeResult decodeLazy(byte[] array, int offset, int length) throws IOException {
+        if (array == null || length == 0) {
+            return null;
+        }
+        return decodeTop(array, offset, offset + length, true);
+    }
+
+    /**
+     * 延迟解析ByteBuffer中position到limit之间的TLV，见{@link #decodeLazy(byte[])}
+     *
+     * @param buffer
+     * @return
+     */
+    public static TLVDecodeResult decodeLazy(ByteBuffer buffer) throws IOException {
+        if (buffer == null || !buffer.hasRemaining()) {
+            return null;
+        }
+        if (buffer.hasArray()) {
+            return decodeTop(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    buffer.arrayOffset() + buffer.limit(), true);
+        }
+        return decodeTop(buffer, buffer.position(), buffer.limit(), true);
+    }
+
+    /**
+     * 按路径只提取需要的Value，不创建任何{@link TLVDecodeResult}：每条路径是从最外层开始逐层的tagValue，
+     * 沿着路径只读取Tag和Length，不在路径上的子树按Length直接跳过。每一层取第一个tagValue匹配的TLV，
+     * 路径中间的TLV必须是Constructed类型
+     * <pre>
+     * int[] found = TLVDecoder.select(bytes, new int[]{100, 3, 1}, new int[]{100, 7});
+     * long userId = TLVUtils.byteArrayToLong(bytes, found[0], found[1]);
+     * </pre>
+     *
+     * @param bytes
+     * @param paths
+     * @return 长度为paths.length * 2，第i条路径的Value起始下标和字节数分别在[2 * i]和[2 * i + 1]，没有找到时都为-1
+     */
+    public static int[] select(byte[] bytes, int[]... paths) {
+        int[] result = new int[paths.length << 1];
+        select(bytes, 0, bytes.length, paths, result);
+        return result;
+    }
+
+    /**
+     * 在字节数组的[offset, offset + length)范围内按路径提取Value，结果写入调用者提供的数组，整个过程不分配内存，
+     * 见{@link #select(byte[], int[]...)}
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @param paths
+     * @param result 长度至少为paths.length * 2
+     * @return 找到的路径条数
+     */
+    public static int select(byte[] bytes, int offset, int length, int[][] paths, int[] result) {
+        int found = 0;
+        for (int i = 0; i < paths.length; i++) {
+            int[] path = paths[i];
+            int start = offset;
+            int limit = offset + length;
+            int valueOffset = -1;
+            int valueLength = -1;
+            for (int depth = 0; depth < path.length; depth++) {
+                int position = find(bytes, start, limit, path[depth]);
+                if (position < 0) {
+                    break;
+                }
+                int tagBytesSize = getTagBytesSize(bytes, position, limit);
+                int lengthBytesSize = getLengthBytesSize(bytes, position + tagBytesSize, limit);
+                int valueStart = position + tagBytesSize + lengthBytesSize;
+                int valueSize = decodeLength(bytes, position + tagBytesSize, lengthBytesSize);
+                if (depth == path.length - 1) {
+                    valueOffset = valueStart;
+                    valueLength = valueSize;
+                } else if (decodeDataType(bytes, position) != TLVEncoder.CONSTRUCTED_DATA) {
+                    break;
+                }
+                start = valueStart;
+                limit = valueStart + valueSize;
+            }
+            result[i << 1] = valueOffset;
+            result[(i << 1) + 1] = valueLength;
+            if (valueOffset >= 0) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 在[offset, limit)范围内的同一层TLV中查找第一个tagValue匹配的TLV，不匹配的TLV按Length跳过
+     *
+     * @param bytes
+     * @param offset
+     * @param limit
+     * @param tagValue
+     * @return 匹配的TLV的起始下标，没有找到或者遇到不完整的TLV时返回-1
+     */
+    private static int find(byte[] bytes, int offset, int limit, int tagValue) {
+        while (offset < limit) {
+            int tagBytesSize = getTagBytesSize(bytes, offset, limit);
+            if (tagBytesSize == 0) {
+                return -1;
+            }
+            int lengthBytesSize = getLengthBytesSize(bytes, offset + tagBytesSize, limit);
+            if (lengthBytesSize == 0) {
+                return -1;
+            }
+            int headerSize = tagBytesSize + lengthBytesSize;
+            int valueSize = decodeLength(bytes, offset + tagBytesSize, lengthBytesSize);
+            if (valueSize < 0 || valueSize > limit - offset - headerSize) {
+                return -1;
+            }
+            if (decodeTagValue(bytes, offset, tagBytesSize) == tagValue) {
+                return offset;
+            }
+            offset += headerSize + valueSize;
+        }
+        return -1;
+    }
+
+    /**
+     * 解析延迟解析的Constructed类型TLV的子TLV，由{@link TLVDecodeResult}在第一次访问Value时调用
+     *
+     * @param array
+     * @param offset Value起始下标
+     * @param limit  Value结束下标（不包含）
+     * @return
+     */
+    static List<TLVDecodeResult> decodeChildren(byte[] array, int offset, int limit) throws IOException {
+        return decodeMulti(array, offset, limit, true);
+    }
+
+    /**
+     * 解析延迟解析的Constructed类型TLV的子TLV，由{@link TLVDecodeResult}在第一次访问Value时调用
+     *
+     * @param buffer
+     * @param offset Value起始下标
+     * @param limit  Value结束下标（不包含）
+     * @return
+     */
+    static List<TLVDecodeResult> decodeChildren(ByteBuffer buffer, int offset, int limit) throws IOException {
+        return decodeMulti(buffer, offset, limit, true);
+    }
+
+    /**
+     * 解析最外层TLV，打开指标时记录解析的字节数、耗时和失败次数，见{@link TLVMetricsRegistry}
+     *
+     * @param array
+     * @param offset
+     * @param limit
+     * @param lazy
+     * @return
+     */
+    private static TLVDecodeResult decodeTop(byte[] array, int offset, int limit, boolean lazy) throws IOException {
+        if (!TLVMetricsRegistry.ENABLED) {
+            return decodeImpl(array, offset, limit, lazy);
+        }
+        long start = System.nanoTime();
+        TLVDecodeResult result;
+        try {
+            result = decodeImpl(array, offset, limit, lazy);
+        } catch (IOException e) {
+            TLVMetricsRegistry.getMetrics().onMalformed();
+            throw e;
+        }
+        TLVMetricsRegistry.getMetrics().onDecoded(getTotalBytesSize(array, offset, limit), System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * 解析最外层TLV，见{@link #decodeTop(byte[], int, int, boolean)}
+     *
+     * @param buffer
+     * @param offset
+     * @param limit
+     * @param lazy
+     * @return
+     */
+    private static TLVDecodeResult decodeTop(ByteBuffer buffer, int offset, int limit, boolean lazy) throws IOException {
+        if (!TLVMetricsRegistry.ENABLED) {
+            return decodeImpl(buffer, offset, limit, lazy);
+        }
+        long start = System.nanoTime();
+        TLVDecodeResult result;
+        try {
+            result = decodeImpl(buffer, offset, limit, lazy);
+        } catch (IOException e) {
+            TLVMetricsRegistry.getMetrics().onMalformed();
+            throw e;
+        }
+        TLVMetricsRegistry.getMetrics().onDecoded(getTotalBytesSize(buffer, offset, limit), System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * 递归逐个解析TLV，Value只记录在原始数组中的位置
+     *
+     * @param array
+     * @param offset 当前TLV的起始下标
+     * @param limit  当前TLV可用数据的结束下标（不包含）
+     * @param lazy   为true时Constructed类型只记录Value的位置，不解析子TLV
+     * @return
+     */
+    private static TLVDecodeResult decodeImpl(byte[] array, int offset, int limit, boolean lazy) throws IOException {
+        // 截取Tag
+        int tagBytesSize = getTagBytesSize(array, offset, limit);
+        if (tagBytesSize == 0) {
+            throw new IOException("tlv tag is incomplete");
+        }
+        // 截取Length
+        int lengthBytesSize = getLengthBytesSize(array, offset + tagBytesSize, limit);
+        if (lengthBytesSize == 0) {
+            throw new IOException("tlv length is incomplete");
+        }
+        int valueBytesSize = decodeLength(array, offset + tagBytesSize, lengthBytesSize);
+        if (valueBytesSize < 0) {
+            // Length超出int的范围
+            throw new IOException("tlv length is invalid");
+        }
+        int valueOffset = offset + tagBytesSize + lengthBytesSize;
+        if (valueBytesSize > limit - valueOffset) {
+            throw new IOException("tlv value is incomplete, need " + valueBytesSize + " bytes but only "
+                    + (limit - valueOffset) + " bytes left");
+        }
+
+        int dataType = decodeDataType(array, offset);
+        TLVDecodeResult result = new TLVDecodeResult();
+        result.setFrameType(decodeFrameType(array, offset));
+        result.setDataType(dataType);
+        result.setTagValue(decodeTagValue(array, offset, tagBytesSize));
+        result.setLength(valueBytesSize);
+        if (dataType == TLVEncoder.CONSTRUCTED_DATA) {
+            if (lazy) {
+                result.setValueRange(array, valueOffset);
+            } else {
+                result.setValue(decodeMulti(array, valueOffset, valueOffset + valueBytesSize, false));
+            }
+        } else {
+            result.setValueRange(array, valueOffset);
+        }
+        return result;
+    }
+
+    private static List<TLVDecodeResult> decodeMulti(byte[] array, int offset, int limit, boolean lazy) throws IOException {
+        if (offset >= limit) {
+            return null;
+        }
+        List<TLVDecodeResult> list = new ArrayList<TLVDecodeResult>();
+        int totalBytesSize;
+        while ((totalBytesSize = getTotalBytesSize(array, offset, limit)) > 0 && totalBytesSize <= limit - offset) {
+            list.add(decodeImpl(array, offset, offset + totalBytesSize, lazy));
+            offset += totalBytesSize;
+        }
+        return list;
+    }
+
+    /**
+     * 递归逐个解析direct ByteBuffer中的TLV，逻辑与{@link #decodeImpl(byte[], int, int, boolean)}一致
+     *
+     * @param buffer
+     * @param offset
+     * @param limit
+     * @param lazy
+     * @return
+     */
+    private static TLVDecodeResult decodeImpl(ByteBuffer buffer, int offset, int limit, boolean lazy) throws IOException {
+        int tagBytesSize = getTagBytesSize(buffer, offset, limit);
+        if (tagBytesSize == 0) {
+            throw new IOException("tlv tag is incomplete");
+        }
+        int lengthBytesSize = getLengthBytesSize(buffer, offset + tagBytesSize, limit);
+        if (lengthBytesSize == 0) {
+            throw new IOException("tlv length is incomplete");
+        }
+        int valueBytesSize = decodeLength(buffer, offset + tagBytesSize, lengthBytesSize);
+        if (valueBytesSize < 0) {
+            // Length超出int的范围
+            throw new IOException("tlv length is invalid");
+        }
+        int valueOffset = offset + tagBytesSize + lengthBytesSize;
+        if (valueBytesSize > limit - valueOffset) {
+            throw new IOException("tlv value is incomplete, need " + valueBytesSize + " bytes but only "
+                    + (limit - valueOffset) + " bytes left");
+        }
+
+        int dataType = TLVEncoder.CONSTRUCTED_DATA & buffer.get(offset);
+        TLVDecodeResult result = new TLVDecodeResult();
+        result.setFrameType(TLVEncoder.PRIVATE_FRAME & buffer.get(offset));
+        result.setDataType(dataType);
+        result.setTagValue(decodeTagValue(buffer, offset, tagBytesSize));
+        result.setLength(valueBytesSize);
+        if (dataType == TLVEncoder.CONSTRUCTED_DATA) {
+            if (lazy) {
+                result.setValueRange(buffer, valueOffset);
+            } else {
+                result.setValue(decodeMulti(buffer, valueOffset, valueOffset + valueBytesSize, false));
+            }
+        } else {
+            result.setValueRange(buffer, valueOffset);
+        }
+        return result;
+    }
+
+    private static List<TLVDecodeResult> decodeMulti(ByteBuffer buffer, int offset, int limit, boolean lazy) throws IOException {
+        if (offset >= limit) {
+            return null;
+        }
+        List<TLVDecodeResult> list = new ArrayList<TLVDecodeResult>();
+        int totalBytesSize;
+        while ((totalBytesSize = getTotalBytesSize(buffer, offset, limit)) > 0 && totalBytesSize <= limit - offset) {
+            list.add(decodeImpl(buffer, offset, offset + totalBytesSize, lazy));
+            offset += totalBytesSize;
+        }
+        return list;
+    }
+
+    /**
+     * 递归逐个解析TLV，此方法有一个bug，会导致tlv数据解析的数组下标越界，因此遗弃
+     *
+     * @return
+     */
+    /*@Deprecated
+    private static TLVDecodeResult decodeImpl(byte[] tlvBytes, List<TLVDecodeResult> list) throws Throwable {
+        if (tlvBytes == null || tlvBytes.length == 0) {
+            return null;
+        }
+        printLog("tlvBytes length:" + tlvBytes.length);
+        // 截取Tag
+        int tagBytesSize = getTagBytesSize(tlvBytes);
+        byte[] tagBytes = new byte[tagBytesSize];
+        printLog("tagBytesSize:" + tagBytesSize);
+        System.arraycopy(tlvBytes, 0, tagBytes, 0, tagBytesSize);
+
+        // 截取Length
+        int lengthBytesSize = getLengthBytesSize(tlvBytes, tagBytesSize);
+        byte[] lengthBytes = new byte[lengthBytesSize];
+        printLog("lengthBytesSize:" + lengthBytesSize);
+        System.arraycopy(tlvBytes, tagBytesSize, lengthBytes, 0, lengthBytesSize);
+
+        // 截取Value
+        int valueBytesSize = decodeLength(lengthBytes);
+        byte[] valueBytes = new byte[valueBytesSize];
+        printLog("valueBytesSize:" + valueBytesSize);
+        System.arraycopy(tlvBytes, tagBytesSize + lengthBytesSize, valueBytes, 0, valueBytesSize);
+
+        // 解析数据
+        TLVDecodeResult result = decodeFirstTLV(tagBytes, lengthBytes, valueBytes);
+        if (result != null) {
+            list.add(result);
+        }
+
+        int totalSize = tlvBytes.length;
+        int firstTLVSize = tagBytesSize + lengthBytesSize + valueBytesSize;
+        if (totalSize > firstTLVSize) {// 父V中有多个子TLV结构体
+            decodeSecondTLV(tlvBytes, firstTLVSize, list);
+        }
+        return result;
+    }*/
+
+    private static void printLog(String text) {
+        if (printLog) {
+            System.out.print(text);
+        }
+    }
+
+    /**
+     * 解析同级V中的第一个TLV
+     *
+     * @param tagBytes
+     * @param lengthBytes
+     * @param valueBytes
+     * @return
+     */
+    /*@Deprecated
+    private static TLVDecodeResult decodeFirstTLV(byte[] tagBytes, byte[] lengthBytes, byte[] valueBytes) throws Throwable {
+        int dataType = decodeDataType(tagBytes);
+        TLVDecodeResult result = new TLVDecodeResult();
+        result.setFrameType(decodeFrameType(tagBytes));
+        result.setDataType(dataType);
+        result.setTagValue(decodeTagValue(tagBytes));
+        result.setLength(decodeLength(lengthBytes));
+        if (dataType == TLVEncoder.ConstructedData) {
+            printLog("TLVDecodeResult dataType:" + dataType);
+            List<TLVDecodeResult> childList = new ArrayList<>();
+            decodeImpl(valueBytes, childList);
+            result.setValue(childList);
+        } else {
+            result.setValue(valueBytes);
+        }
+
+		*//*
+         * if (result.getTagValue() == 0) {
+		 * System.err.println("RID:"+result.getIntValue()); }
+		 *//*
+
+        return result;
+    }*/
+
+    /**
+     * 解析同级V中的第二个TLV
+     *
+     * @param tlvBytes
+     * @param firstTLVSize
+     * @param list
+     */
+    /*@Deprecated
+    private static TLVDecodeResult decodeSecondTLV(byte[] tlvBytes, int firstTLVSize, List<TLVDecodeResult> list) throws Throwable {
+        int totalSize = tlvBytes.length;
+        byte[] nextBytes = new byte[totalSize - firstTLVSize];
+        System.arraycopy(tlvBytes, firstTLVSize, nextBytes, 0, totalSize - firstTLVSize);
+        TLVDecodeResult result = decodeImpl(nextBytes, list);
+        return result;
+    }*/
+
+    /**
+     * 获取到全部的TLV数量，包括Constructed类型的TLV和它们的所有子孙。
+     * 子TLV在父TLV的Value中首尾相连，因此按顺序遇到Constructed类型就进入它的Value、遇到Primitive类型就跳过它的Value，
+     * 一次线性遍历就能数出所有节点，不需要递归也不分配内存。需要深度、tagValue分布等更多统计时使用{@link TLVScanner}
+     *
+     * @param tlvBytes
+     * @return
+     * @throws IllegalArgumentException 数据不完整
+     */
+    public static int getTLVSize(byte[] tlvBytes) {
+        int size = 0;
+        int offset = 0;
+        int limit = tlvBytes.length;
+        while (offset < limit) {
+            int tagBytesSize = getTagBytesSize(tlvBytes, offset, limit);
+            int lengthBytesSize = tagBytesSize == 0 ? 0 : getLengthBytesSize(tlvBytes, offset + tagBytesSize, limit);
+            if (lengthBytesSize == 0) {
+                throw new IllegalArgumentException("tlv data is incomplete at " + offset);
+            }
+            int valueOffset = offset + tagBytesSize + lengthBytesSize;
+            int valueBytesSize = decodeLength(tlvBytes, offset + tagBytesSize, lengthBytesSize);
+            if (valueBytesSize < 0 || valueBytesSize > limit - valueOffset) {
+                throw new IllegalArgumentException("tlv data is incomplete at " + offset);
+            }
+            size++;
+            if (decodeDataType(tlvBytes, offset) == TLVEncoder.CONSTRUCTED_DATA) {
+                offset = valueOffset;
+            } else {
+                offset = valueOffset + valueBytesSize;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 获取Tag占用的字节数
+     *
+     * @param tlvBytes
+     * @return
+     */
+    public static int getTagBytesSize(byte[] tlvBytes) {
+        return getTagBytesSize(tlvBytes, 0, tlvBytes.length);
+    }
+
+    /**
+     * 获取从offset开始的Tag占用的字节数，Tag不完整时返回0
+     *
+     * @param bytes
+     * @param offset Tag起始下标
+     * @param limit  可用数据的结束下标（不包含）
+     * @return
+     */
+    public static int getTagBytesSize(byte[] bytes, int offset, int limit) {
+        for (int i = offset; i < limit; i++) {
+            if ((bytes[i] & 0x80) == 0x00) {
+                return i - offset + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 获取从offset开始的Tag占用的字节数，Tag不完整时返回0，不改变buffer的position
+     *
+     * @param buffer
+     * @param offset Tag起始下标
+     * @param limit  可用数据的结束下标（不包含）
+     * @return
+     */
+    public static int getTagBytesSize(ByteBuffer buffer, int offset, int limit) {
+        for (int i = offset; i < limit; i++) {
+            if ((buffer.get(i) & 0x80) == 0x00) {
+                return i - offset + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 获取Length占用的字节数
+     *
+     * @param tlvBytes
+     * @return
+     */
+    public static int getLengthBytesSize(byte[] tlvBytes, int offset) {
+        return getLengthBytesSize(tlvBytes, offset, tlvBytes.length);
+    }
+
+    /**
+     * 获取从offset开始的Length占用的字节数，Length不完整时返回0
+     *
+     * @param bytes
+     * @param offset Length起始下标
+     * @param limit  可用数据的结束下标（不包含）
+     * @return
+     */
+    public static int getLengthBytesSize(byte[] bytes, int offset, int limit) {
+        // Tag和Length的结束规则相同，都是以最高位为0的字节结束
+        return getTagBytesSize(bytes, offset, limit);
+    }
+
+    /**
+     * 获取从offset开始的Length占用的字节数，Length不完整时返回0，不改变buffer的position
+     *
+     * @param buffer
+     * @param offset Length起始下标
+     * @param limit  可用数据的结束下标（不包含）
+     * @return
+     */
+    public static int getLengthBytesSize(ByteBuffer buffer, int offset, int limit) {
+        return getTagBytesSize(buffer, offset, limit);
+    }
+
+    /**
+     * 获取从offset开始的第一个TLV占用的总字节数（Tag + Length + Value），Tag或Length不完整时返回0。
+     * 返回值只由Tag和Length推算得出，Value是否已经完整需要调用者和可用数据长度比较。Length超出int的范围时返回-1
+     *
+     * @param bytes
+     * @param offset TLV起始下标
+     * @param limit  可用数据的结束下标（不包含）
+     * @return
+     */
+    public static int getTotalBytesSize(byte[] bytes, int offset, int limit) {
+        int tagBytesSize = getTagBytesSize(bytes, offset, limit);
+        if (tagBytesSize == 0) {
+            return 0;
+        }
+        int lengthBytesSize = getLengthBytesSize(bytes, offset + tagBytesSize, limit);
+        if (lengthBytesSize == 0) {
+            return 0;
+        }
+        int valueBytesSize = decodeLength(bytes, offset + tagBytesSize, lengthBytesSize);
+        if (valueBytesSize < 0 || valueBytesSize > Integer.MAX_VALUE - tagBytesSize - lengthBytesSize) {
+            return -1;
+        }
+        return tagBytesSize + lengthBytesSize + valueBytesSize;
+    }
+
+    /**
+     * 获取从offset开始的第一个TLV占用的总字节数，规则同{@link #getTotalBytesSize(byte[], int, int)}，不改变buffer的position
+     *
+     * @param buffer
+     * @param offset TLV起始下标
+     * @param limit  可用数据的结束下标（不包含）
+     * @return
+     */
+    public static int getTotalBytesSize(ByteBuffer buffer, int offset, int limit) {
+        int tagBytesSize = getTagBytesSize(buffer, offset, limit);
+        if (tagBytesSize == 0) {
+            return 0;
+        }
+        int lengthBytesSize = getLengthBytesSize(buffer, offset + tagBytesSize, limit);
+        if (lengthBytesSize == 0) {
+            return 0;
+        }
+        int valueBytesSize = decodeLength(buffer, offset + tagBytesSize, lengthBytesSize);
+        if (valueBytesSize < 0 || valueBytesSize > Integer.MAX_VALUE - tagBytesSize - lengthBytesSize) {
+            return -1;
+        }
+        return tagBytesSize + lengthBytesSize + valueBytesSize;
+    }
+
+    /**
+     * 解析TLV的Tag中的frameType
+     *
+     * @param tagBytes
+     * @return
+     */
+    public static int decodeFrameType(byte[] tagBytes) {
+        return decodeFrameType(tagBytes, 0);
+    }
+
+    /**
+     * 解析从offset开始的Tag中的frameType
+     *
+     * @param bytes
+     * @param offset Tag起始下标
+     * @return
+     */
+    public static int decodeFrameType(byte[] bytes, int offset) {
+        return TLVEncoder.PRIVATE_FRAME & bytes[offset];
+    }
+
+    /**
+     * 解析TLV的Tag中的dataType
+     *
+     * @param tagBytes
+     * @return
+     */
+    public static int decodeDataType(byte[] tagBytes) {
+        return decodeDataType(tagBytes, 0);
+    }
+
+    /**
+     * 解析从offset开始的Tag中的dataType
+     *
+     * @param bytes
+     * @param offset Tag起始下标
+     * @return
+     */
+    public static int decodeDataType(byte[] bytes, int offset) {
+        return TLVEncoder.CONSTRUCTED_DATA & bytes[offset];
+    }
+
+    /**
+     * 解析从offset开始的Tag中的dataType，不改变buffer的position
+     *
+     * @param buffer
+     * @param offset Tag起始下标
+     * @return
+     */
+    public static int decodeDataType(ByteBuffer buffer, int offset) {
+        return TLVEncoder.CONSTRUCTED_DATA & buffer.get(offset);
+    }
+
+    /**
+     * 解析TLV的Tag中的tagValue
+     *
+     * @param tagBytes
+     * @return
+     */
+    public static int decodeTagValue(byte[] tagBytes) {
+        return decodeTagValue(tagBytes, 0, tagBytes.length);
+    }
+
+    /**
+     * 解析从offset开始的Tag中的tagValue
+     *
+     * @param bytes
+     * @param offset       Tag起始下标
+     * @param tagBytesSize Tag占用的字节数
+     * @return
+     */
+    public static int decodeTagValue(byte[] bytes, int offset, int tagBytesSize) {
+        int tagValue = 0x80 & bytes[offset];
+        int result = 0;
+        if (tagValue != 0x80) {
+            result = bytes[offset] & 0x1f;
+        } else {
+            //高位到低位解析
+//			result = decodeTagValueFromHighToLowBit(tagBytes);
+            //低位到高位解析
+            for (int i = 1; i < tagBytesSize; i++) {
+                result |= (0x7f & bytes[offset + i]) << 7 * (i - 1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 解析从offset开始的Tag中的tagValue，不改变buffer的position
+     *
+     * @param buffer
+     * @param offset       Tag起始下标
+     * @param tagBytesSize Tag占用的字节数
+     * @return
+     */
+    public static int decodeTagValue(ByteBuffer buffer, int offset, int tagBytesSize) {
+        int first = buffer.get(offset);
+        int result = 0;
+        if ((0x80 & first) != 0x80) {
+            result = first & 0x1f;
+        } else {
+            for (int i = 1; i < tagBytesSize; i++) {
+                result |= (0x7f & buffer.get(offset + i)) << 7 * (i - 1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 从高位到低位解析tagValue
+     *
+     * @param bytes
+     * @return
+     */
+    private static int decodeValueFromHighToLowBit(byte[] bytes) {
+        int result = 0;
+        for (int i = 1; i < bytes.length; i++) {
+            result |= (0x7f & bytes[i]) << 7 * (bytes.length - i - 1);
+        }
+        return result;
+    }
+
+    /**
+     * 解析TLV中的Length
+     *
+     * @param lengthBytes
+     * @return Length超出int的范围时返回-1
+     */
+    public static int decodeLength(byte[] lengthBytes) {
+        return decodeLength(lengthBytes, 0, lengthBytes.length);
+    }
+
+    /**
+     * 解析从offset开始的Length
+     *
+     * @param bytes
+     * @param offset          Length起始下标
+     * @param lengthBytesSize Length占用的字节数
+     * @return Length超过{@link TLVValidator#MAX_LENGTH_BYTES}个字节，或者最后一个字节超出int的范围时返回-1
+     */
+    public static int decodeLength(byte[] bytes, int offset, int lengthBytesSize) {
+        int result = 0;
+        int len = 0x80 & bytes[offset];
+        if (len != 0x80) {
+            // 短形式，最高位为0，剩余7位就是长度
+            result = bytes[offset];
+        } else if (lengthBytesSize > TLVValidator.MAX_LENGTH_BYTES || lengthBytesSize == TLVValidator.MAX_LENGTH_BYTES
+                && (0x7f & bytes[offset + lengthBytesSize - 1]) > 0x07) {
+            // 第5个字节左移28位，只剩3位可用，再多的位会被移出int
+            return -1;
+        } else {
+            result |= 0x7f & bytes[offset];
+            for (int i = 1; i < lengthBytesSize; i++) {
+//                result |= (0x7f & lengthBytes[i]) << 7 * (lengthBytes.length - i);
+                result |= (0x7f & bytes[offset + i]) << 7 * i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 解析从offset开始的Length，不改变buffer的position
+     *
+     * @param buffer
+     * @param offset          Length起始下标
+     * @param lengthBytesSize Length占用的字节数
+     * @return 规则同{@link #decodeLength(byte[], int, int)}，超出int的范围时返回-1
+     */
+    public static int decodeLength(ByteBuffer buffer, int offset, int lengthBytesSize) {
+        int result = 0;
+        int first = buffer.get(offset);
+        if ((0x80 & first) != 0x80) {
+            result = first;
+        } else if (lengthBytesSize > TLVValidator.MAX_LENGTH_BYTES || lengthBytesSize == TLVValidator.MAX_LENGTH_BYTES
+                && (0x7f & buffer.get(offset + lengthBytesSize - 1)) > 0x07) {
+            return -1;
+        } else {
+            result |= 0x7f & first;
+            for (int i = 1; i < lengthBytesSize; i++) {
+                result |= (0x7f & buffer.get(offset + i)) << 7 * i;
+            }
+        }
+        return result;
+    }
+}
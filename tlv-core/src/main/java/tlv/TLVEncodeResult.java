@@ -1,5 +1,8 @@
 package tlv;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.util.Arrays;
 
 /**
@@ -37,6 +40,34 @@ public class TLVEncodeResult {
         return newBytes;
     }
 
+    /**
+     * 将Tag,Length,Value分别包装成ByteBuffer，不合并成一个数组，可以直接交给{@link GatheringByteChannel#write(ByteBuffer[])}。
+     * ByteBuffer和本对象共享字节数组，写出之前不能修改
+     *
+     * @return Value为空时只有Tag和Length两个ByteBuffer
+     */
+    public ByteBuffer[] toByteBuffers() {
+        ByteBuffer tag = ByteBuffer.wrap(tagBytes, 0, tagSize);
+        ByteBuffer length = ByteBuffer.wrap(lengthBytes, 0, lengthSize);
+        if (valueBytes == null || valueSize == 0) {
+            return new ByteBuffer[]{tag, length};
+        }
+        return new ByteBuffer[]{tag, length, ByteBuffer.wrap(valueBytes, 0, valueSize)};
+    }
+
+    /**
+     * 用一次或多次集中写把整个TLV写入channel，Value不会被复制到中间数组。
+     * 阻塞到全部写完才返回，channel必须是阻塞模式，见{@link TLVUtils#writeFully(GatheringByteChannel, ByteBuffer[])}
+     *
+     * @param channel
+     * @return 写入的字节数
+     * @throws IOException
+     * @throws IllegalArgumentException channel是非阻塞模式
+     */
+    public long writeTo(GatheringByteChannel channel) throws IOException {
+        return TLVUtils.writeFully(channel, toByteBuffers());
+    }
+
     public int getTagSize() {
         return tagSize;
     }
@@ -1,5 +1,7 @@
 package tlv;
 
+import java.nio.ByteBuffer;
+
 /**
  * TLV编码实现
  * <p/>
@@ -52,6 +54,18 @@ public class TLVEncoder {
      */
     public static final int CONSTRUCTED_DATA = 0x20;
 
+    /**
+     * 默认预先计算Tag编码表的tagValue上限
+     */
+    public static final int DEFAULT_TAG_TABLE_BOUND = 1024;
+
+    /**
+     * 编码表的tagValue上限最大值，避免编码表占用过多内存
+     */
+    private static final int MAX_TAG_TABLE_BOUND = 1 << 14;
+
+    private static volatile TagTable tagTable = new TagTable(DEFAULT_TAG_TABLE_BOUND);
+
     /**
      * TLV格式编码
      *
@@ -123,7 +137,7 @@ public class TLVEncoder {
      * 生成 Tag ByteArray
      * </p>
      * <p>
-     * <b>其中 tagValue <= 2097151，超过之后编码的结果是错误的</b>
+     * <b>其中 tagValue <= 2097151 时Tag最多占用4个字节，超过之后占用5个字节</b>
      * </p>
      * <p>
      * Tag首节字说明
@@ -145,23 +159,71 @@ public class TLVEncoder {
      * @return Tag ByteArray
      */
     public static byte[] encodeTag(int frameType, int dataType, int tagValue) {
-        int result = frameType | dataType | tagValue;
-        int digit = 0;
+        byte[] tagBytes = new byte[computeTagSize(tagValue)];
+        writeTag(tagBytes, 0, frameType, dataType, tagValue);
+        return tagBytes;
+    }
+
+    /**
+     * 把Tag直接写入dest的offset位置，编码规则同{@link #encodeTag(int, int, int)}，不分配内存。
+     * 标准frameType、dataType组合下tagValue小于{@link #setTagTableBound(int)}设置的上限时直接从预先计算好的表中复制
+     *
+     * @param dest      目标数组，需要至少有{@link #computeTagSize(int)}个字节的空间
+     * @param offset    写入的起始下标
+     * @param frameType TLV类型
+     * @param dataType  数据类型
+     * @param tagValue  Tag 值
+     * @return 写入的字节数
+     */
+    public static int writeTag(byte[] dest, int offset, int frameType, int dataType, int tagValue) {
+        int type = frameType | dataType;
+        TagTable table = tagTable;
+        if (tagValue >= 0 && tagValue < table.bound && (type & ~(PRIVATE_FRAME | CONSTRUCTED_DATA)) == 0) {
+            int index = ((type >> 5) * table.bound + tagValue) * TagTable.STRIDE;
+            byte[] headers = table.headers;
+            int size = headers[index];
+            for (int i = 0; i < size; i++) {
+                dest[offset + i] = headers[index + 1 + i];
+            }
+            return size;
+        }
+        return writeTagImpl(dest, offset, type, tagValue);
+    }
+
+    /**
+     * 把Tag直接写入dest的offset位置，不改变dest的position
+     *
+     * @param dest
+     * @param offset
+     * @param frameType
+     * @param dataType
+     * @param tagValue
+     * @return 写入的字节数
+     */
+    public static int writeTag(ByteBuffer dest, int offset, int frameType, int dataType, int tagValue) {
+        if (dest.hasArray()) {
+            return writeTag(dest.array(), dest.arrayOffset() + offset, frameType, dataType, tagValue);
+        }
+        int type = frameType | dataType;
+        if (tagValue < 0x1f) {
+            dest.put(offset, (byte) (type | tagValue));
+            return 1;
+        }
+        dest.put(offset, (byte) (type | 0x80));
+        return 1 + writeValueFromLowToHighBit(dest, offset + 1, tagValue, computeDigit(tagValue));
+    }
+
+    private static int writeTagImpl(byte[] dest, int offset, int type, int tagValue) {
         // 0x1f 为 31 ，二进制为11111
-        if (tagValue < 0x1f){
+        if (tagValue < 0x1f) {
             // 1 byte tag
-            result = frameType | dataType | tagValue;
-        } else{
-            // mutli byte tag
-            result = frameType | dataType | 0x80;   // 0x80 为 128，二进制为10000000
-            digit = (int) computeTagDigit(tagValue);
-            result <<= 8 * digit;
-            //高位到低位
-//			rawTag = encodeTagValueFromHighToLowBit(rawTag, digit, tagValue);
-            //低位到高位
-            result = encodeValueFromLowToHighBit(result, digit, tagValue);
+            dest[offset] = (byte) (type | tagValue);
+            return 1;
         }
-        return intToByteArrayForTag(result, digit);
+        // mutli byte tag，首字节最高位置1表示有后续字节，0x80 为 128，二进制为10000000
+        dest[offset] = (byte) (type | 0x80);
+        //低位到高位
+        return 1 + writeValueFromLowToHighBit(dest, offset + 1, tagValue, computeDigit(tagValue));
     }
 
     /**
@@ -182,58 +244,30 @@ public class TLVEncoder {
     }
 
     /**
-     * 从低位到高位对tagValue进行编码
+     * 从低位到高位对value进行编码，每个字节存7bit，除最后一个字节外最高位都置1
      *
-     * @param result 形参，int类型的只传值进来，因此必须反馈编码结果
-     * @param digit
+     * @param dest
+     * @param offset
      * @param value
-     * @return
+     * @param digit  编码后的字节数
+     * @return 写入的字节数
      */
-    private static int encodeValueFromLowToHighBit(int result, int digit, int value) {
-        //低位到高位
+    private static int writeValueFromLowToHighBit(byte[] dest, int offset, int value, int digit) {
         for (int i = 0; i < digit - 1; i++) {
             // 十六进制的0x7f， 十进制为 127， 二进制为  1111111
             // 十六进制的0x80， 十进制为 128， 二进制为  10000000
-            result |= ((value >> i * 7 & 0x7f) | 0x80) << (digit - 1 - i) * 8;
-//			System.out.println("tag:"+Integer.toBinaryString(((tagValue >> i * 7 & 0x7f) | 0x80) << (digit - 1 - i) * 8));
-//			System.out.println("rawTag:" + Integer.toBinaryString(rawTag));
-        }
-//		System.out.println("high:" + Integer.toBinaryString((tagValue >> (digit - 1) * 7) & 0x7f));
-        result |= (value >> (digit - 1) * 7) & 0x7f;
-        return result;
-    }
-
-    private static byte[] intToByteArrayForTag(int value, int digit) {
-        byte[] result = new byte[digit + 1];
-        int length = result.length;
-        result[0] = (byte) ((value >> (8 * digit)) & 0xff);
-        for (int i = 0; i < length; i++) {
-            //这里有两种方法来实现高位到低位或者低位到高位的编码，具体选择哪种待评估
-//			if (i == length -1) {
-//				result[i] = (byte) ((value >> (8 * (i - 1))) & 0x7f);
-//			} else {
-//				result[i] = (byte) ((value >> (8 * (i - 1))) & 0xff | 0x80);
-//			}
-            result[i] = (byte) ((value >> (8 * (digit - i))) & 0xff);//高位到低位
+            dest[offset + i] = (byte) ((value >>> i * 7 & 0x7f) | 0x80);
         }
-        return result;
+        dest[offset + digit - 1] = (byte) (value >>> (digit - 1) * 7 & 0x7f);
+        return digit;
     }
 
-    private static byte[] intToByteArrayForLength(int value, int digit) {
-        byte[] result = new byte[digit];
-        int length = result.length;
-        // 0xff  对应的十进制为255    对应的二进制为： 11111111
-        result[0] = (byte) ((value >> (8 * (digit - 1))) & 0xff);
-        for (int i = 1; i < length; i++) {
-            //这里有两种方法来实现高位到低位或者低位到高位的编码，具体选择哪种待评估
-//			if (i == length -1) {
-//				result[i] = (byte) ((value >> (8 * (i - 1))) & 0x7f);
-//			} else {
-//				result[i] = (byte) ((value >> (8 * (i - 1))) & 0xff | 0x80);
-//			}
-            result[i] = (byte) ((value >> (8 * (digit - i - 1))) & 0xff);//高位到低位
+    private static int writeValueFromLowToHighBit(ByteBuffer dest, int offset, int value, int digit) {
+        for (int i = 0; i < digit - 1; i++) {
+            dest.put(offset + i, (byte) ((value >>> i * 7 & 0x7f) | 0x80));
         }
-        return result;
+        dest.put(offset + digit - 1, (byte) (value >>> (digit - 1) * 7 & 0x7f));
+        return digit;
     }
 
     /**
@@ -248,17 +282,23 @@ public class TLVEncoder {
     }
 
     /**
-     * 计算Tag字节数,推导出来的计算公式
+     * 计算Tag占用的字节数
+     *
+     * @param tagValue
+     * @return
+     */
+    public static int computeTagSize(int tagValue) {
+        return tagValue < 0x1f ? 1 : 1 + computeDigit(tagValue);
+    }
+
+    /**
+     * 计算value按每个字节7bit编码需要的字节数，即ceil(log128(value + 1))，用整数位运算代替浮点对数
      *
      * @param value
      * @return
      */
-    private static double computeTagDigit(double value) {
-        if (value < 0x1f) {
-            throw new IllegalArgumentException(
-                    "the tag value must not less than 31.");
-        }
-        return Math.ceil(log(value + 1, 128));
+    private static int computeDigit(int value) {
+        return Math.max(1, (32 - Integer.numberOfLeadingZeros(value) + 6) / 7);
     }
 
     /**
@@ -282,30 +322,100 @@ public class TLVEncoder {
      * @return
      */
     public static byte[] encodeLength(int length) {
-        if (length < 0) {
-            throw new IllegalArgumentException(
-                    "the length must not less than 0.");
-        }
+        byte[] lengthBytes = new byte[computeLengthSize(length)];
+        writeLength(lengthBytes, 0, length);
+        return lengthBytes;
+    }
+
+    /**
+     * 把Length直接写入dest的offset位置，编码规则同{@link #encodeLength(int)}，不分配内存
+     *
+     * @param dest   目标数组，需要至少有{@link #computeLengthSize(int)}个字节的空间
+     * @param offset 写入的起始下标
+     * @param length Value的字节数
+     * @return 写入的字节数
+     */
+    public static int writeLength(byte[] dest, int offset, int length) {
         // 短形式
         if (length < 128) {
-            byte[] lengthBytes = new byte[1];
-            lengthBytes[0] = (byte) (0x7f & length);
-            return lengthBytes;
-        } else { // 长形式
-            int digit = (int) computeLengthDigit(length);
-            int result = 0;
-            result = encodeValueFromLowToHighBit(result, digit, length);
-            return intToByteArrayForLength(result, digit);
+            checkLength(length);
+            dest[offset] = (byte) (0x7f & length);
+            return 1;
+        }
+        // 长形式
+        return writeValueFromLowToHighBit(dest, offset, length, computeDigit(length));
+    }
+
+    /**
+     * 把Length直接写入dest的offset位置，不改变dest的position
+     *
+     * @param dest
+     * @param offset
+     * @param length
+     * @return 写入的字节数
+     */
+    public static int writeLength(ByteBuffer dest, int offset, int length) {
+        if (length < 128) {
+            checkLength(length);
+            dest.put(offset, (byte) (0x7f & length));
+            return 1;
         }
+        return writeValueFromLowToHighBit(dest, offset, length, computeDigit(length));
     }
 
     /**
-     * 计算length的字节数,推导出来的计算公式
+     * 计算Length占用的字节数
      *
      * @param length
      * @return
      */
-    private static double computeLengthDigit(int length) {
-        return Math.ceil(log(length + 1, 128));
+    public static int computeLengthSize(int length) {
+        checkLength(length);
+        return length < 128 ? 1 : computeDigit(length);
+    }
+
+    private static void checkLength(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException(
+                    "the length must not less than 0.");
+        }
+    }
+
+    /**
+     * 设置预先计算Tag编码表的tagValue上限，小于上限的tagValue在{@link #writeTag(byte[], int, int, int, int)}时直接查表，
+     * 每种frameType、dataType组合各一张表，设置为0时不使用编码表
+     *
+     * @param bound tagValue上限，默认为{@link #DEFAULT_TAG_TABLE_BOUND}
+     */
+    public static void setTagTableBound(int bound) {
+        tagTable = new TagTable(bound);
+    }
+
+    /**
+     * 预先计算好的Tag编码表，每个Tag占{@link #STRIDE}个字节：第一个字节是Tag的字节数，后面是Tag的内容
+     */
+    private static final class TagTable {
+
+        static final int STRIDE = 5;
+
+        final int bound;
+
+        final byte[] headers;
+
+        TagTable(int bound) {
+            if (bound < 0 || bound > MAX_TAG_TABLE_BOUND) {
+                throw new IllegalArgumentException("the tag table bound must between 0 and " + MAX_TAG_TABLE_BOUND + ".");
+            }
+            this.bound = bound;
+            this.headers = new byte[4 * bound * STRIDE];
+            int[] types = {PRIMITIVE_FRAME | PRIMITIVE_DATA, PRIMITIVE_FRAME | CONSTRUCTED_DATA,
+                    PRIVATE_FRAME | PRIMITIVE_DATA, PRIVATE_FRAME | CONSTRUCTED_DATA};
+            for (int type : types) {
+                for (int tagValue = 0; tagValue < bound; tagValue++) {
+                    int index = ((type >> 5) * bound + tagValue) * STRIDE;
+                    headers[index] = (byte) writeTagImpl(headers, index + 1, type, tagValue);
+                }
+            }
+        }
     }
 }
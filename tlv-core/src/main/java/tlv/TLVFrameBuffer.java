@@ -0,0 +1,188 @@
+package tlv;
+
+import java.util.Arrays;
+
+/**
+ * 不加锁的TLV字节数据缓冲区，分帧逻辑和{@link TLVByteBuffer}相同，但所有方法都没有同步，
+ * 只能在一个线程中使用（例如每个连接固定由一个IO线程读取并截取TLV）
+ * <p/>
+ * 每个TLV由{@link TLVValidator}校验：扩容之前先检查未截取数据的Tag和Length，截取之前再检查整个结构，
+ * 校验失败时抛出{@link IllegalStateException}
+ */
+public class TLVFrameBuffer {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private byte[] buf;
+
+    /**
+     * 读下标，之前的数据都已经被截取走了
+     */
+    private int readPosition;
+
+    /**
+     * 写下标，[readPosition, writePosition)之间是还没有被截取的数据
+     */
+    private int writePosition;
+
+    private int firstTotalSize;
+
+    private final TLVValidator validator;
+
+    public TLVFrameBuffer() {
+        this(DEFAULT_CAPACITY, TLVValidator.DEFAULT);
+    }
+
+    public TLVFrameBuffer(int initialCapacity) {
+        this(initialCapacity, TLVValidator.DEFAULT);
+    }
+
+    /**
+     * @param initialCapacity 内部缓冲区初始大小
+     * @param validator       截取前校验TLV的校验器，为null时不校验
+     */
+    public TLVFrameBuffer(int initialCapacity, TLVValidator validator) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("the initial capacity must be greater than 0.");
+        }
+        buf = new byte[initialCapacity];
+        this.validator = validator;
+    }
+
+    public void write(byte[] buffer) {
+        write(buffer, 0, buffer.length);
+    }
+
+    /**
+     * @param buffer
+     * @param offset
+     * @param len
+     * @throws IllegalStateException 需要扩容时未截取的数据没有通过校验
+     */
+    public void write(byte[] buffer, int offset, int len) {
+        ensureWritable(len);
+        System.arraycopy(buffer, offset, buf, writePosition, len);
+        writePosition += len;
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onBuffered(writePosition - readPosition);
+        }
+    }
+
+    /**
+     * 检测是否已经有第一个完整的TLV字节数据
+     *
+     * @return
+     * @throws IllegalStateException 第一个TLV没有通过校验
+     */
+    public boolean hasNextTLVData() {
+        if (writePosition == readPosition) {
+            return false;
+        }
+        if (firstTotalSize == 0) {
+            if (validator == null) {
+                int totalSize = TLVDecoder.getTotalBytesSize(buf, readPosition, writePosition);
+                if (totalSize < 0) {
+                    // 不能记录为firstTotalSize，否则之后不会再检查，缓冲区只会无限增长
+                    recordMalformed();
+                    throw new IllegalStateException("tlv length is invalid");
+                }
+                firstTotalSize = totalSize;
+            } else {
+                // 只有完整并且通过校验的TLV才记录总字节数，不完整时下次重新检查
+                int result = validator.validate(buf, readPosition, writePosition);
+                if (result < 0) {
+                    recordMalformed();
+                    throw new IllegalStateException(TLVValidator.getErrorMessage(result));
+                }
+                firstTotalSize = result;
+            }
+        }
+        return firstTotalSize > 0 && firstTotalSize <= writePosition - readPosition;
+    }
+
+    /**
+     * 将第一个完整的tlv字节数据截取出来并从缓存中抹除这个tlv字节数据
+     *
+     * @return 没有完整的TLV数据时返回null
+     * @throws IllegalStateException 第一个TLV没有通过校验
+     */
+    public byte[] cutNextTLVData() {
+        if (!hasNextTLVData()) {
+            return null;
+        }
+        byte[] data = Arrays.copyOfRange(buf, readPosition, readPosition + firstTotalSize);
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onCopied(data.length);
+        }
+        readPosition += firstTotalSize;
+        firstTotalSize = 0;
+        if (readPosition == writePosition) {
+            readPosition = 0;
+            writePosition = 0;
+        }
+        return data;
+    }
+
+    /**
+     * 未截取的数据字节数
+     *
+     * @return
+     */
+    public int size() {
+        return writePosition - readPosition;
+    }
+
+    public void reset() {
+        readPosition = 0;
+        writePosition = 0;
+        firstTotalSize = 0;
+    }
+
+    /**
+     * 写入前检查剩余空间，不够时先把未读数据移动到数组头部，仍然不够再扩容
+     *
+     * @param len
+     */
+    private void ensureWritable(int len) {
+        if (writePosition + len <= buf.length) {
+            return;
+        }
+        int unread = writePosition - readPosition;
+        if (unread + len <= buf.length) {
+            System.arraycopy(buf, readPosition, buf, 0, unread);
+            if (TLVMetricsRegistry.ENABLED) {
+                TLVMetricsRegistry.getMetrics().onCompacted(unread);
+            }
+        } else {
+            checkHeader();
+            byte[] newBuf = new byte[Math.max(buf.length << 1, unread + len)];
+            System.arraycopy(buf, readPosition, newBuf, 0, unread);
+            buf = newBuf;
+            if (TLVMetricsRegistry.ENABLED) {
+                TLVMetricsRegistry.getMetrics().onGrown(unread);
+            }
+        }
+        readPosition = 0;
+        writePosition = unread;
+    }
+
+    /**
+     * 扩容之前检查未截取数据的Tag和Length，避免为错误的或者过大的TLV分配内存
+     */
+    private void checkHeader() {
+        if (validator == null) {
+            return;
+        }
+        int result = validator.validateHeader(buf, readPosition, writePosition);
+        if (result < 0) {
+            recordMalformed();
+            throw new IllegalStateException(TLVValidator.getErrorMessage(result));
+        }
+    }
+
+    private static void recordMalformed() {
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onMalformed();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package tlv;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 阻塞式的TLV分帧读取器，从InputStream中逐个读出完整的最外层TLV，分帧逻辑和{@link TLVFrameBuffer}相同，
+ * 但数据直接读入内部缓冲区，不经过中间数组。
+ * <p/>
+ * 没有任何synchronized代码，在虚拟线程中阻塞读取时不会把虚拟线程固定在载体线程上。
+ * 内部缓冲区初始很小、按需扩容，适合每个连接一个读取器、同时存在大量连接的场景。此类不是线程安全的
+ * <p/>
+ * 每个TLV由{@link TLVValidator}校验：Tag和Length读到后先检查声明的总字节数，超过限制时在扩容之前就抛出异常，
+ * 完整读取后再检查整个结构
+ */
+public class TLVFrameReader {
+
+    private static final int DEFAULT_CAPACITY = 512;
+
+    private final InputStream in;
+
+    private byte[] buf;
+
+    /**
+     * 读下标，之前的数据都已经被截取走了
+     */
+    private int readPosition;
+
+    /**
+     * 写下标，[readPosition, writePosition)之间是还没有被截取的数据
+     */
+    private int writePosition;
+
+    private final TLVValidator validator;
+
+    private final TLVCompressor compressor;
+
+    public TLVFrameReader(InputStream in) {
+        this(in, DEFAULT_CAPACITY, TLVValidator.DEFAULT);
+    }
+
+    public TLVFrameReader(InputStream in, int initialCapacity) {
+        this(in, initialCapacity, TLVValidator.DEFAULT);
+    }
+
+    /**
+     * @param in
+     * @param initialCapacity 内部缓冲区初始大小
+     * @param validator       校验TLV的校验器，为null时不校验
+     */
+    public TLVFrameReader(InputStream in, int initialCapacity, TLVValidator validator) {
+        this(in, initialCapacity, validator, null);
+    }
+
+    /**
+     * @param in
+     * @param initialCapacity 内部缓冲区初始大小
+     * @param validator       校验TLV的校验器，为null时不校验
+     * @param compressor      {@link #read()}遇到压缩过的TLV时用它解压，解压出的TLV同样经过validator校验；为null时不解压
+     */
+    public TLVFrameReader(InputStream in, int initialCapacity, TLVValidator validator, TLVCompressor compressor) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("the initial capacity must be greater than 0.");
+        }
+        this.in = in;
+        this.buf = new byte[initialCapacity];
+        this.validator = validator;
+        this.compressor = compressor;
+    }
+
+    /**
+     * 阻塞读取下一个完整的TLV并解析。解析结果中的Value直接指向内部缓冲区，只在下一次读取之前有效
+     *
+     * @return 数据流在两个TLV之间结束时返回null
+     * @throws EOFException 数据流在一个TLV的中间结束
+     * @throws IOException   TLV没有通过校验或者读取出错
+     */
+    public TLVDecodeResult read() throws IOException {
+        int totalSize = fill();
+        if (totalSize == 0) {
+            return null;
+        }
+        int offset = readPosition;
+        readPosition += totalSize;
+        if (compressor != null) {
+            return compressor.decode(buf, offset, totalSize, validator);
+        }
+        return TLVDecoder.decode(buf, offset, totalSize);
+    }
+
+    /**
+     * 阻塞读取下一个完整的TLV字节数据
+     *
+     * @return 数据流在两个TLV之间结束时返回null
+     * @throws EOFException 数据流在一个TLV的中间结束
+     * @throws IOException   TLV没有通过校验或者读取出错
+     */
+    public byte[] readFrame() throws IOException {
+        int totalSize = fill();
+        if (totalSize == 0) {
+            return null;
+        }
+        byte[] frame = Arrays.copyOfRange(buf, readPosition, readPosition + totalSize);
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onCopied(totalSize);
+        }
+        readPosition += totalSize;
+        return frame;
+    }
+
+    /**
+     * 读取数据直到缓冲区中有一个完整的TLV
+     *
+     * @return 这个TLV的总字节数，数据流在两个TLV之间结束时返回0
+     * @throws IOException
+     */
+    private int fill() throws IOException {
+        if (readPosition == writePosition) {
+            readPosition = 0;
+            writePosition = 0;
+        }
+        while (true) {
+            int available = writePosition - readPosition;
+            int totalSize = totalBytesSize();
+            if (totalSize > 0 && totalSize <= available) {
+                if (validator != null) {
+                    try {
+                        validator.check(buf, readPosition, totalSize);
+                    } catch (IOException e) {
+                        recordMalformed();
+                        throw e;
+                    }
+                }
+                return totalSize;
+            }
+            // Tag和Length不完整时至少再读一个字节
+            ensureWritable(totalSize > 0 ? totalSize - available : 1);
+            int n = in.read(buf, writePosition, buf.length - writePosition);
+            if (n < 0) {
+                if (available == 0) {
+                    return 0;
+                }
+                throw new EOFException("tlv data is incomplete");
+            }
+            writePosition += n;
+            if (TLVMetricsRegistry.ENABLED) {
+                TLVMetricsRegistry.getMetrics().onBuffered(writePosition - readPosition);
+            }
+        }
+    }
+
+    /**
+     * 第一个TLV声明的总字节数，Tag和Length不完整时返回0
+     *
+     * @return
+     * @throws IOException Tag或Length没有通过校验
+     */
+    private int totalBytesSize() throws IOException {
+        if (validator == null) {
+            int totalSize = TLVDecoder.getTotalBytesSize(buf, readPosition, writePosition);
+            if (totalSize < 0) {
+                throw new IOException("tlv length is invalid");
+            }
+            return totalSize;
+        }
+        int result = validator.validateHeader(buf, readPosition, writePosition);
+        if (result < 0) {
+            recordMalformed();
+            throw new IOException(TLVValidator.getErrorMessage(result));
+        }
+        return result;
+    }
+
+    private static void recordMalformed() {
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onMalformed();
+        }
+    }
+
+    /**
+     * 读取前检查剩余空间：不够时先把未截取的数据移动到缓冲区头部，仍然不够再扩容
+     *
+     * @param len
+     */
+    private void ensureWritable(int len) {
+        if (writePosition + len <= buf.length) {
+            return;
+        }
+        int unread = writePosition - readPosition;
+        if (unread + len <= buf.length) {
+            System.arraycopy(buf, readPosition, buf, 0, unread);
+            if (TLVMetricsRegistry.ENABLED) {
+                TLVMetricsRegistry.getMetrics().onCompacted(unread);
+            }
+        } else {
+            byte[] newBuf = new byte[Math.max(buf.length << 1, unread + len)];
+            System.arraycopy(buf, readPosition, newBuf, 0, unread);
+            buf = newBuf;
+            if (TLVMetricsRegistry.ENABLED) {
+                TLVMetricsRegistry.getMetrics().onGrown(unread);
+            }
+        }
+        readPosition = 0;
+        writePosition = unread;
+    }
+}
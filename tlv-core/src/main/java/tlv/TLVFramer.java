@@ -0,0 +1,275 @@
+package tlv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * 基于NIO ByteBuffer的TLV分帧器，作用和{@link TLVByteBuffer}一样用来解决TCP连接的粘包问题，
+ * 但数据直接从{@link ReadableByteChannel}读入内部的ByteBuffer（可以是direct buffer），
+ * 截取出来的TLV是内部缓冲区的切片，整个过程不产生中间的byte[]
+ * <p/>
+ * 注意：{@link #nextFrame()}返回的切片和内部缓冲区共享内容，下一次{@link #readFrom(ReadableByteChannel)}或
+ * {@link #write(ByteBuffer)}可能会移动或覆盖这些数据，因此必须在此之前处理完（例如用{@link TLVDecoder#decode(ByteBuffer)}解析并取出需要的值）。
+ * 此类不是线程安全的，应当只在一个IO线程中使用
+ * <p/>
+ * 每个TLV由{@link TLVValidator}校验：缓冲区需要扩容时先检查未截取数据的Tag和Length，声明的总字节数超过限制时不再扩容；
+ * 截取之前再检查整个结构。校验失败时抛出{@link IllegalStateException}，剩余的数据已经无法分帧，应当关闭连接
+ */
+public class TLVFramer {
+
+    static final int DEFAULT_CAPACITY = 8192;
+
+    private final boolean direct;
+
+    private ByteBuffer buffer;
+
+    /**
+     * 读下标，之前的数据都已经被截取走了
+     */
+    private int readIndex = 0;
+
+    /**
+     * 写下标，[readIndex, writeIndex)之间是还没有被截取的数据
+     */
+    private int writeIndex = 0;
+
+    private final TLVValidator validator;
+
+    /**
+     * 已经通过校验的第一个完整TLV的总字节数，0表示还没有计算
+     */
+    private int frameSize = 0;
+
+    public TLVFramer() {
+        this(DEFAULT_CAPACITY, false, TLVValidator.DEFAULT);
+    }
+
+    public TLVFramer(int initialCapacity, boolean direct) {
+        this(initialCapacity, direct, TLVValidator.DEFAULT);
+    }
+
+    /**
+     * @param initialCapacity 内部缓冲区初始大小，单个TLV超过这个大小时自动扩容
+     * @param direct          是否使用direct buffer
+     * @param validator       校验TLV的校验器，为null时不校验
+     */
+    public TLVFramer(int initialCapacity, boolean direct, TLVValidator validator) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("the initial capacity must be greater than 0.");
+        }
+        this.direct = direct;
+        this.buffer = allocate(initialCapacity);
+        this.validator = validator;
+    }
+
+    /**
+     * 从channel读取数据到内部缓冲区，至多调用一次{@link ReadableByteChannel#read(ByteBuffer)}
+     *
+     * @param channel
+     * @return 本次读取的字节数，channel已经关闭时返回-1
+     * @throws IOException
+     * @throws IllegalStateException 需要扩容时未截取的数据没有通过校验
+     */
+    public int readFrom(ReadableByteChannel channel) throws IOException {
+        ensureWritable(1);
+        buffer.limit(buffer.capacity());
+        buffer.position(writeIndex);
+        int n = channel.read(buffer);
+        if (n > 0) {
+            writeIndex += n;
+            if (TLVMetricsRegistry.ENABLED) {
+                TLVMetricsRegistry.getMetrics().onBuffered(writeIndex - readIndex);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * 把src中剩余的数据写入内部缓冲区，src的position会移动到limit
+     *
+     * @param src
+     * @throws IllegalStateException 需要扩容时未截取的数据没有通过校验
+     */
+    public void write(ByteBuffer src) {
+        ensureWritable(src.remaining());
+        buffer.limit(buffer.capacity());
+        buffer.position(writeIndex);
+        writeIndex += src.remaining();
+        buffer.put(src);
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onBuffered(writeIndex - readIndex);
+        }
+    }
+
+    /**
+     * 检测是否已经有第一个完整的TLV数据
+     *
+     * @return
+     * @throws IllegalStateException 第一个TLV没有通过校验
+     */
+    public boolean hasNextFrame() {
+        return frameSize() > 0;
+    }
+
+    /**
+     * 截取第一个完整的TLV数据
+     *
+     * @return 和内部缓冲区共享内容的切片，position为0，limit为TLV的总长度；没有完整的TLV时返回null
+     * @throws IllegalStateException 第一个TLV没有通过校验
+     */
+    public ByteBuffer nextFrame() {
+        int totalSize = frameSize();
+        if (totalSize == 0) {
+            return null;
+        }
+        ByteBuffer frame = slice(buffer, readIndex, totalSize);
+        frameSize = 0;
+        readIndex += totalSize;
+        if (readIndex == writeIndex) {
+            readIndex = 0;
+            writeIndex = 0;
+        }
+        return frame;
+    }
+
+    /**
+     * 未截取的数据字节数
+     *
+     * @return
+     */
+    public int size() {
+        return writeIndex - readIndex;
+    }
+
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    public void reset() {
+        readIndex = 0;
+        writeIndex = 0;
+        frameSize = 0;
+    }
+
+    /**
+     * 直接在调用者自己的ByteBuffer上截取第一个完整的TLV数据，适合调用者自己管理从SocketChannel读数据的缓冲区。
+     * 截取成功时buffer的position移动到这个TLV之后，不完整时position不变，调用者应当{@link ByteBuffer#compact()}后继续读取。
+     * 这个方法不做校验，需要时调用者自己用{@link TLVValidator#validate(ByteBuffer, int, int)}检查
+     *
+     * @param buffer 处于读模式的ByteBuffer（flip之后）
+     * @return 和buffer共享内容的切片，没有完整的TLV时返回null
+     * @throws IllegalStateException Length超出int的范围
+     */
+    public static ByteBuffer sliceFrame(ByteBuffer buffer) {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        int totalSize = TLVDecoder.getTotalBytesSize(buffer, position, limit);
+        if (totalSize < 0) {
+            throw new IllegalStateException("tlv length is invalid");
+        }
+        if (totalSize == 0 || totalSize > limit - position) {
+            return null;
+        }
+        ByteBuffer frame = slice(buffer, position, totalSize);
+        buffer.position(position + totalSize);
+        return frame;
+    }
+
+    /**
+     * 第一个完整TLV的总字节数，结果缓存到截取为止
+     *
+     * @return 没有完整的TLV时返回0
+     */
+    private int frameSize() {
+        if (frameSize > 0) {
+            return frameSize;
+        }
+        int totalSize;
+        if (validator == null) {
+            totalSize = TLVDecoder.getTotalBytesSize(buffer, readIndex, writeIndex);
+            if (totalSize < 0) {
+                throw new IllegalStateException("tlv length is invalid");
+            }
+            if (totalSize > writeIndex - readIndex) {
+                return 0;
+            }
+        } else {
+            totalSize = validator.validate(buffer, readIndex, writeIndex);
+            if (totalSize < 0) {
+                recordMalformed();
+                throw new IllegalStateException(TLVValidator.getErrorMessage(totalSize));
+            }
+        }
+        frameSize = totalSize;
+        return totalSize;
+    }
+
+    /**
+     * 扩容之前检查未截取数据的Tag和Length，避免为错误的或者过大的TLV分配内存
+     */
+    private void checkHeader() {
+        if (validator == null) {
+            return;
+        }
+        int result = validator.validateHeader(buffer, readIndex, writeIndex);
+        if (result < 0) {
+            recordMalformed();
+            throw new IllegalStateException(TLVValidator.getErrorMessage(result));
+        }
+    }
+
+    private static void recordMalformed() {
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onMalformed();
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer frame = buffer.duplicate();
+        frame.limit(offset + length);
+        frame.position(offset);
+        return frame.slice();
+    }
+
+    /**
+     * 写入前检查剩余空间：不够时先把未截取的数据移动到缓冲区头部，仍然不够再扩容
+     *
+     * @param len
+     */
+    private void ensureWritable(int len) {
+        if (writeIndex + len <= buffer.capacity()) {
+            return;
+        }
+        int unread = writeIndex - readIndex;
+        if (readIndex > 0 && unread + len <= buffer.capacity()) {
+            buffer.limit(writeIndex);
+            buffer.position(readIndex);
+            buffer.compact();
+            if (TLVMetricsRegistry.ENABLED) {
+                TLVMetricsRegistry.getMetrics().onCompacted(unread);
+            }
+        } else {
+            checkHeader();
+            int newCapacity = Math.max(buffer.capacity() << 1, unread + len);
+            ByteBuffer newBuffer = allocate(newCapacity);
+            buffer.limit(writeIndex);
+            buffer.position(readIndex);
+            newBuffer.put(buffer);
+            buffer = newBuffer;
+            if (TLVMetricsRegistry.ENABLED) {
+                TLVMetricsRegistry.getMetrics().onGrown(unread);
+            }
+        }
+        readIndex = 0;
+        writeIndex = unread;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+}
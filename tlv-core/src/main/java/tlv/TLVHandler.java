@@ -0,0 +1,31 @@
+package tlv;
+
+/**
+ * {@link TLVReactor}的事件回调，所有方法都在反应器线程中调用，不能执行阻塞操作，耗时的处理应当交给其他线程
+ */
+public interface TLVHandler {
+
+    /**
+     * 连接建立，包括接受的连接和主动发起的连接
+     *
+     * @param connection
+     */
+    void onOpen(TLVConnection connection);
+
+    /**
+     * 收到一个完整的TLV。解析结果中的Value直接指向连接的读缓冲区，只在这次回调期间有效，
+     * 需要在回调之后使用的数据应当先取出来（例如调用{@link TLVDecodeResult#getValue()}或{@link TLVDecodeResult#getLongValue()}）
+     *
+     * @param connection
+     * @param result
+     */
+    void onFrame(TLVConnection connection, TLVDecodeResult result);
+
+    /**
+     * 连接关闭，每个连接只调用一次
+     *
+     * @param connection
+     * @param cause      对方关闭或者主动调用{@link TLVConnection#close()}时为null，否则是导致连接关闭的异常
+     */
+    void onClose(TLVConnection connection, Throwable cause);
+}
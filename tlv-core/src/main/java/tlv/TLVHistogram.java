@@ -0,0 +1,122 @@
+package tlv;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定桶的直方图，第i个桶记录[2^i, 2^(i+1))范围内的值（第0个桶同时记录0），共{@link #BUCKET_COUNT}个桶，
+ * 超出范围的值记入最后一个桶。每个桶是一个{@link LongAdder}，多个线程同时记录时没有竞争，占用的内存固定。
+ * 分位数按桶的上界估算，误差不超过一倍，适合观察耗时的数量级和长尾
+ */
+public class TLVHistogram {
+
+    public static final int BUCKET_COUNT = 40;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+
+    private final LongAdder sum = new LongAdder();
+
+    public TLVHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一个值，负数按0记录
+     *
+     * @param value
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets[bucketOf(value)].increment();
+        sum.add(value);
+    }
+
+    /**
+     * 记录的值的个数
+     *
+     * @return
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : getSum() / count;
+    }
+
+    /**
+     * 估算分位数
+     *
+     * @param percentile 0到1之间，例如0.99
+     * @return 分位数所在桶的上界，没有记录时返回0
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 1) {
+            throw new IllegalArgumentException("the percentile must between 0 and 1.");
+        }
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return getUpperBound(i);
+            }
+        }
+        return getUpperBound(BUCKET_COUNT - 1);
+    }
+
+    /**
+     * 每个桶当前的计数
+     *
+     * @return
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * 第index个桶的上界（包含）
+     *
+     * @param index
+     * @return
+     */
+    public static long getUpperBound(int index) {
+        return index == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << (index + 1)) - 1;
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        sum.reset();
+    }
+
+    private static int bucketOf(long value) {
+        int index = 63 - Long.numberOfLeadingZeros(value);
+        return index < 0 ? 0 : Math.min(index, BUCKET_COUNT - 1);
+    }
+}
@@ -0,0 +1,468 @@
+package tlv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 只追加的TLV日志，用于持久化每一条消息。多个线程并发调用{@link #append(byte[])}，
+ * 由一个后台提交线程把一个提交间隔内积累的TLV合并成一次{@link FileChannel#write(ByteBuffer[])}和一次{@link FileChannel#force(boolean)}
+ * （组提交），落盘后再完成各自的Future，避免每条消息一次fsync。
+ * <p/>
+ * 日志由目录下的多个分段文件组成，文件名是分段第一个TLV在整个日志中的位置（20位十进制数字）加上{@link #SEGMENT_SUFFIX}，
+ * 当前分段超过大小限制后切换到新的分段，每个分段都可以用{@link TLVMappedFile}读取。
+ * 重新打开已有的日志时，最后一个分段末尾不完整的TLV（例如上次写入时进程崩溃）会被截掉；
+ * 末尾的数据不是一个TLV的开头时视为分段已经损坏，抛出IOException，不会截掉任何数据
+ */
+public class TLVLogWriter implements Closeable {
+
+    /**
+     * 分段文件的扩展名
+     */
+    public static final String SEGMENT_SUFFIX = ".tlv";
+
+    /**
+     * 默认的分段大小
+     */
+    public static final long DEFAULT_SEGMENT_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * 默认的提交间隔，单位毫秒
+     */
+    public static final long DEFAULT_COMMIT_INTERVAL = 2;
+
+    private final File directory;
+
+    private final long segmentSize;
+
+    private final long commitInterval;
+
+    private final Object lock = new Object();
+
+    /**
+     * 等待提交的TLV，和{@link #committing}交替使用，提交线程每次整批取走
+     */
+    private List<Pending> pending = new ArrayList<Pending>();
+
+    private List<Pending> committing = new ArrayList<Pending>();
+
+    private boolean closed = false;
+
+    /**
+     * 写入失败后的异常，此后所有追加都直接失败
+     */
+    private IOException failure;
+
+    private final Thread committer;
+
+    // 以下字段只由提交线程访问
+
+    private FileChannel channel;
+
+    /**
+     * 当前分段第一个TLV在整个日志中的位置
+     */
+    private long segmentStart;
+
+    /**
+     * 当前分段已经写入的字节数
+     */
+    private long segmentPosition;
+
+    private long lastCommitTime;
+
+    private ByteBuffer[] buffers = new ByteBuffer[16];
+
+    public TLVLogWriter(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_COMMIT_INTERVAL);
+    }
+
+    /**
+     * @param directory      分段文件所在的目录，不存在时自动创建
+     * @param segmentSize    单个分段的大小限制，分段内已有数据时，超过这个大小的TLV写入新的分段
+     * @param commitInterval 两次提交之间至少间隔的毫秒数，为0时上一次落盘完成后立即提交已经积累的TLV
+     * @throws IOException 不能创建目录或者最后一个分段已经损坏
+     */
+    public TLVLogWriter(File directory, long segmentSize, long commitInterval) throws IOException {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("the segment size must be greater than 0.");
+        }
+        if (commitInterval < 0) {
+            throw new IllegalArgumentException("the commit interval must not be negative.");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("can not create directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.commitInterval = commitInterval;
+        openLastSegment();
+        committer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                commitLoop();
+            }
+        }, "TLVLogWriter-" + directory.getName());
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * 追加一个TLV对象，见{@link #append(byte[])}
+     *
+     * @param tlvObject
+     * @return
+     */
+    public CompletableFuture<Long> append(TLVObject tlvObject) {
+        return append(tlvObject.toByteArray());
+    }
+
+    /**
+     * 追加一个或多个首尾相连的完整TLV，调用者在返回的Future完成之前不能修改tlvBytes
+     *
+     * @param tlvBytes
+     * @return 数据落盘后完成，结果是数据在整个日志中的位置；写入失败或日志已经关闭时以IOException异常完成
+     */
+    public CompletableFuture<Long> append(byte[] tlvBytes) {
+        CompletableFuture<Long> future = new CompletableFuture<Long>();
+        synchronized (lock) {
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else if (closed) {
+                future.completeExceptionally(new IOException("the log writer is closed"));
+            } else {
+                pending.add(new Pending(tlvBytes, future));
+                if (pending.size() == 1) {
+                    lock.notifyAll();
+                }
+            }
+        }
+        return future;
+    }
+
+    /**
+     * 已经落盘的数据在整个日志中的结束位置
+     *
+     * @return
+     */
+    public long position() {
+        synchronized (lock) {
+            return segmentStart + segmentPosition;
+        }
+    }
+
+    /**
+     * 停止接收新的数据，等待已经追加的数据落盘后关闭当前分段
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        boolean interrupted = false;
+        while (committer.isAlive()) {
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private void commitLoop() {
+        try {
+            while (true) {
+                List<Pending> batch = takeBatch();
+                if (batch == null) {
+                    break;
+                }
+                commit(batch);
+                batch.clear();
+            }
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // 所有数据都已经force过，关闭失败不影响已经完成的Future
+            }
+        }
+    }
+
+    /**
+     * 等待到下一个提交时间并取走这期间积累的所有TLV
+     *
+     * @return 已经关闭且没有剩余数据时返回null
+     */
+    private List<Pending> takeBatch() {
+        synchronized (lock) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    if (!pending.isEmpty()) {
+                        long wait = closed ? 0 : lastCommitTime + commitInterval - System.currentTimeMillis();
+                        if (wait <= 0) {
+                            break;
+                        }
+                        lock.wait(wait);
+                    } else if (closed) {
+                        return null;
+                    } else {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            List<Pending> batch = pending;
+            pending = committing;
+            committing = batch;
+            return batch;
+        }
+    }
+
+    /**
+     * 写入一批TLV并落盘，超过分段大小时先提交已经写入的部分再切换分段
+     *
+     * @param batch
+     */
+    private void commit(List<Pending> batch) {
+        int from = 0;
+        try {
+            while (from < batch.size()) {
+                if (segmentPosition > 0 && segmentPosition + batch.get(from).bytes.length > segmentSize) {
+                    rollSegment();
+                }
+                // 当前分段能容纳的连续一段TLV
+                long size = segmentPosition;
+                int to = from;
+                do {
+                    size += batch.get(to).bytes.length;
+                    to++;
+                } while (to < batch.size() && size + batch.get(to).bytes.length <= segmentSize);
+                long start = segmentStart + segmentPosition;
+                write(batch, from, to);
+                channel.force(false);
+                synchronized (lock) {
+                    segmentPosition = size;
+                }
+                for (int i = from; i < to; i++) {
+                    Pending p = batch.get(i);
+                    p.future.complete(start);
+                    start += p.bytes.length;
+                }
+                from = to;
+            }
+        } catch (IOException e) {
+            synchronized (lock) {
+                failure = e;
+                closed = true;
+                for (Pending p : pending) {
+                    p.future.completeExceptionally(e);
+                }
+                pending.clear();
+            }
+            for (int i = from; i < batch.size(); i++) {
+                batch.get(i).future.completeExceptionally(e);
+            }
+        } finally {
+            lastCommitTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 把batch中[from, to)的TLV集中写入当前分段
+     */
+    private void write(List<Pending> batch, int from, int to) throws IOException {
+        int count = to - from;
+        if (buffers.length < count) {
+            buffers = new ByteBuffer[Math.max(count, buffers.length << 1)];
+        }
+        long remaining = 0;
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = batch.get(from + i).bytes;
+            buffers[i] = ByteBuffer.wrap(bytes);
+            remaining += bytes.length;
+        }
+        int offset = 0;
+        while (remaining > 0) {
+            remaining -= channel.write(buffers, offset, count - offset);
+            while (offset < count && !buffers[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            buffers[i] = null;
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        channel.close();
+        long start = segmentStart + segmentPosition;
+        channel = openSegment(start);
+        syncDirectory();
+        synchronized (lock) {
+            segmentStart = start;
+            segmentPosition = 0;
+        }
+    }
+
+    /**
+     * 打开最后一个分段，截掉末尾不完整的TLV；没有分段时创建第一个分段
+     *
+     * @throws IOException 末尾的数据不是一个不完整的TLV
+     */
+    private void openLastSegment() throws IOException {
+        long lastStart = -1;
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                long start = parseSegmentStart(name);
+                if (start > lastStart) {
+                    lastStart = start;
+                }
+            }
+        }
+        if (lastStart < 0) {
+            segmentStart = 0;
+            segmentPosition = 0;
+            channel = openSegment(0);
+            syncDirectory();
+            return;
+        }
+        long end;
+        TLVMappedFile segment = new TLVMappedFile(segmentFile(lastStart));
+        try {
+            while (segment.nextFrame() != null) {
+            }
+            end = segment.position();
+        } finally {
+            segment.close();
+        }
+        channel = openSegment(lastStart);
+        long size = channel.size();
+        if (size > end) {
+            if (!isTornTail(channel, end, size)) {
+                channel.close();
+                throw new IOException("segment " + segmentFile(lastStart) + " is corrupted at " + end);
+            }
+            channel.truncate(end);
+        }
+        channel.position(end);
+        segmentStart = lastStart;
+        segmentPosition = end;
+    }
+
+    private FileChannel openSegment(long start) throws IOException {
+        FileChannel segment = new RandomAccessFile(segmentFile(start), "rw").getChannel();
+        segment.position(segment.size());
+        return segment;
+    }
+
+    /**
+     * 最后一个完整TLV之后的数据是否只是一个TLV的开头：Tag或Length不完整，或者声明的总字节数超出了文件末尾
+     *
+     * @param channel
+     * @param offset 最后一个完整TLV的结束位置
+     * @param size   文件大小
+     * @return
+     * @throws IOException
+     */
+    private static boolean isTornTail(FileChannel channel, long offset, long size) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate((int) Math.min(size - offset, TLVValidator.MAX_TAG_BYTES + TLVValidator.MAX_LENGTH_BYTES));
+        while (header.hasRemaining() && channel.read(header, offset + header.position()) >= 0) {
+        }
+        byte[] bytes = header.array();
+        int limit = header.position();
+        int tagBytesSize = TLVValidator.tagBytesSize(bytes, 0, limit);
+        if (tagBytesSize <= 0) {
+            return tagBytesSize == TLVValidator.INCOMPLETE;
+        }
+        int lengthBytesSize = TLVValidator.lengthBytesSize(bytes, tagBytesSize, limit);
+        if (lengthBytesSize <= 0) {
+            return lengthBytesSize == TLVValidator.INCOMPLETE;
+        }
+        long totalBytesSize = (long) tagBytesSize + lengthBytesSize + TLVDecoder.decodeLength(bytes, tagBytesSize, lengthBytesSize);
+        return totalBytesSize > size - offset;
+    }
+
+    /**
+     * 创建分段文件后把目录落盘，否则系统崩溃后目录中可能没有这个文件，其中已经force过的数据也随之丢失
+     *
+     * @throws IOException
+     */
+    private void syncDirectory() throws IOException {
+        FileChannel dir;
+        try {
+            dir = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            // Windows等平台不能打开目录，由文件系统自己保证
+            return;
+        }
+        try {
+            dir.force(true);
+        } finally {
+            dir.close();
+        }
+    }
+
+    private File segmentFile(long start) {
+        return new File(directory, String.format("%020d", start) + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * 从分段文件名解析分段的起始位置
+     *
+     * @param name
+     * @return 不是分段文件时返回-1
+     */
+    static long parseSegmentStart(String name) {
+        if (name.length() != 20 + SEGMENT_SUFFIX.length() || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        long start = 0;
+        for (int i = 0; i < 20; i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            start = start * 10 + (c - '0');
+        }
+        return start;
+    }
+
+    private static class Pending {
+
+        final byte[] bytes;
+
+        final CompletableFuture<Long> future;
+
+        Pending(byte[] bytes, CompletableFuture<Long> future) {
+            this.bytes = bytes;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package tlv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 用内存映射读取首尾相连的TLV文件，逐个返回TLV在映射区域上的切片，可以直接交给{@link TLVDecoder#decode(ByteBuffer)}解析。
+ * 文件内容由操作系统的页缓存负责加载，读取再大的文件也不会占用Java堆。
+ * <p/>
+ * 单个{@link MappedByteBuffer}最多只能映射2GB，因此文件按窗口分段映射：当前窗口剩下的数据不足一个完整的TLV时，
+ * 从这个TLV的起始位置重新映射下一个窗口，每个TLV都完整地落在一个窗口内。
+ * <p/>
+ * 注意：返回的切片在文件关闭后仍然可以访问，但文件被截断后再访问会导致JVM崩溃；旧窗口在被垃圾回收时才解除映射。
+ * 此类不是线程安全的
+ */
+public class TLVMappedFile implements Closeable {
+
+    /**
+     * 默认的映射窗口大小
+     */
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    private final RandomAccessFile file;
+
+    private final FileChannel channel;
+
+    private final int windowSize;
+
+    /**
+     * 文件大小，读到末尾时重新获取，以便读取在此之后追加的TLV
+     */
+    private long fileSize;
+
+    /**
+     * 当前窗口，null表示还没有映射
+     */
+    private MappedByteBuffer window;
+
+    /**
+     * 当前窗口在文件中的起始位置
+     */
+    private long windowStart;
+
+    /**
+     * 下一个TLV在文件中的位置
+     */
+    private long position;
+
+    /**
+     * 上一次{@link #nextFrame()}返回的TLV在文件中的位置
+     */
+    private long frameOffset = -1;
+
+    public TLVMappedFile(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param file
+     * @param windowSize 每次映射的最大字节数，超过这个大小的单个TLV单独映射
+     * @throws IOException
+     */
+    public TLVMappedFile(File file, int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("the window size must be greater than 0.");
+        }
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        this.windowSize = windowSize;
+        this.fileSize = channel.size();
+    }
+
+    /**
+     * 检测从当前位置开始是否还有完整的TLV，文件末尾不完整的TLV（例如还在写入中）视为没有
+     *
+     * @return
+     * @throws IOException
+     */
+    public boolean hasNextFrame() throws IOException {
+        return frameSize() > 0;
+    }
+
+    /**
+     * 返回当前位置的TLV，并把当前位置移到这个TLV之后
+     *
+     * @return 和映射区域共享内容的只读切片，position为0，limit为TLV的总长度；没有完整的TLV时返回null
+     * @throws IOException
+     */
+    public ByteBuffer nextFrame() throws IOException {
+        int totalSize = frameSize();
+        if (totalSize == 0) {
+            return null;
+        }
+        int offset = (int) (position - windowStart);
+        ByteBuffer frame = window.duplicate();
+        frame.limit(offset + totalSize);
+        frame.position(offset);
+        frameOffset = position;
+        position += totalSize;
+        return frame.slice();
+    }
+
+    /**
+     * 上一次{@link #nextFrame()}返回的TLV在文件中的位置，还没有返回过TLV时为-1
+     *
+     * @return
+     */
+    public long getFrameOffset() {
+        return frameOffset;
+    }
+
+    /**
+     * 下一个TLV在文件中的位置
+     *
+     * @return
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * 跳到文件中的指定位置，position必须是某个TLV的起始位置，例如之前{@link #getFrameOffset()}的返回值
+     *
+     * @param position
+     */
+    public void seek(long position) {
+        if (position < 0) {
+            throw new IllegalArgumentException("the position must not be negative.");
+        }
+        this.position = position;
+    }
+
+    /**
+     * 文件大小
+     *
+     * @return
+     */
+    public long size() {
+        return fileSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        file.close();
+    }
+
+    /**
+     * 获取当前位置的TLV的总字节数，必要时重新映射窗口使这个TLV完整地落在窗口内
+     *
+     * @return 没有完整的TLV时返回0
+     * @throws IOException
+     */
+    private int frameSize() throws IOException {
+        if (position >= fileSize) {
+            fileSize = channel.size();
+            if (position >= fileSize) {
+                return 0;
+            }
+        }
+        int totalSize = windowFrameSize();
+        if (totalSize > 0) {
+            return totalSize;
+        }
+        // 当前窗口中的数据不够，从当前位置重新映射；窗口已经映射到文件末尾时重新映射也没有用
+        if (window == null || position < windowStart || windowStart + window.limit() < fileSize) {
+            map(position, windowSize);
+            totalSize = windowFrameSize();
+            if (totalSize > 0) {
+                return totalSize;
+            }
+        }
+        // Tag和Length完整但Value超过了窗口大小，单独映射这个TLV
+        int offset = (int) (position - windowStart);
+        int available = window.limit() - offset;
+        int totalBytesSize = TLVDecoder.getTotalBytesSize(window, offset, window.limit());
+        if (totalBytesSize > available && position + totalBytesSize <= fileSize) {
+            map(position, totalBytesSize);
+            return windowFrameSize();
+        }
+        // 文件末尾的TLV不完整，可能是在打开之后又追加了数据
+        long newFileSize = channel.size();
+        if (newFileSize > fileSize) {
+            fileSize = newFileSize;
+            return frameSize();
+        }
+        return 0;
+    }
+
+    /**
+     * 在当前窗口中获取当前位置的TLV的总字节数
+     *
+     * @return 当前位置不在窗口内或者TLV在窗口内不完整时返回0
+     */
+    private int windowFrameSize() {
+        if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+            return 0;
+        }
+        int offset = (int) (position - windowStart);
+        int limit = window.limit();
+        int totalSize = TLVDecoder.getTotalBytesSize(window, offset, limit);
+        if (totalSize <= 0 || totalSize > limit - offset) {
+            return 0;
+        }
+        return totalSize;
+    }
+
+    private void map(long start, int size) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size, fileSize - start));
+        windowStart = start;
+    }
+}
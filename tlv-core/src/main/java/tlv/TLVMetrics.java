@@ -0,0 +1,58 @@
+package tlv;
+
+/**
+ * 编解码和分帧的指标接口，由编解码器和各个分帧缓冲区在热路径上调用，实现必须是线程安全的并且尽量不阻塞。
+ * <p/>
+ * 只有在{@link TLVMetricsRegistry#ENABLED}为true时才会被调用，默认实现是{@link TLVCodecMetrics}，
+ * 也可以通过{@link TLVMetricsRegistry#setMetrics(TLVMetrics)}换成其他实现，例如转发到已有的监控系统
+ */
+public interface TLVMetrics {
+
+    /**
+     * 编码出一段完整的数据
+     *
+     * @param bytes 编码结果的字节数
+     */
+    void onEncoded(int bytes);
+
+    /**
+     * 解析了一个TLV
+     *
+     * @param bytes 这个TLV的总字节数
+     * @param nanos 解析耗时
+     */
+    void onDecoded(int bytes, long nanos);
+
+    /**
+     * 发现一个格式错误的TLV，包括没有通过{@link TLVValidator}校验和解析失败
+     */
+    void onMalformed();
+
+    /**
+     * 数据写入分帧缓冲区之后调用
+     *
+     * @param bytes 缓冲区中还没有被截取的字节数
+     */
+    void onBuffered(int bytes);
+
+    /**
+     * 分帧缓冲区为了腾出空间把未读数据移动到了头部
+     *
+     * @param bytes 移动的字节数
+     */
+    void onCompacted(int bytes);
+
+    /**
+     * 分帧缓冲区空间不够，扩容到了新的数组
+     *
+     * @param bytes 复制到新数组的字节数
+     */
+    void onGrown(int bytes);
+
+    /**
+     * 截取TLV时把数据复制到了新的数组
+     *
+     * @param bytes 复制的字节数
+     */
+    void onCopied(int bytes);
+}
@@ -0,0 +1,79 @@
+package tlv;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * 指标的开关和当前使用的{@link TLVMetrics}。
+ * <p/>
+ * 启动JVM时加上-Dtlv.metrics=true打开指标，此时默认使用一个{@link TLVCodecMetrics}并注册到JMX，名称为{@link #DEFAULT_MBEAN_NAME}。
+ * 所有调用点都先判断{@link #ENABLED}，它是static final的常量，关闭时JIT会把整段指标代码当作死代码消除，热路径上没有任何额外开销
+ */
+public final class TLVMetricsRegistry {
+
+    /**
+     * 是否打开指标，由系统属性tlv.metrics决定，运行期间不能修改
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("tlv.metrics");
+
+    public static final String DEFAULT_MBEAN_NAME = "tlv:type=TLVCodecMetrics";
+
+    private static volatile TLVMetrics metrics;
+
+    static {
+        if (ENABLED) {
+            TLVCodecMetrics codecMetrics = new TLVCodecMetrics();
+            metrics = codecMetrics;
+            try {
+                registerMBean(DEFAULT_MBEAN_NAME, codecMetrics);
+            } catch (Throwable e) {
+                // 没有JMX的环境中只是不能远程查看，指标照常记录
+            }
+        }
+    }
+
+    private TLVMetricsRegistry() {
+    }
+
+    /**
+     * 当前使用的指标实现，{@link #ENABLED}为false时返回null
+     *
+     * @return
+     */
+    public static TLVMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 替换指标实现，只在{@link #ENABLED}为true时生效
+     *
+     * @param metrics
+     */
+    public static void setMetrics(TLVMetrics metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("the metrics must not be null.");
+        }
+        if (ENABLED) {
+            TLVMetricsRegistry.metrics = metrics;
+        }
+    }
+
+    /**
+     * 把一个标准MBean注册到平台MBeanServer，已经存在同名的MBean时先注销
+     *
+     * @param name  ObjectName，例如{@link #DEFAULT_MBEAN_NAME}
+     * @param mbean 实现了对应MBean接口的对象，例如{@link TLVCodecMetrics}
+     * @throws JMException
+     */
+    public static void registerMBean(String name, Object mbean) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(name);
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(mbean, objectName);
+    }
+}
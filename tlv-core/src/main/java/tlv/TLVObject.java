@@ -0,0 +1,303 @@
+package tlv;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TLV编码构建对象
+ * <p/>
+ * put时只记录每个子项（tagValue和Value，嵌套的TLVObject只记录引用），{@link #toByteArray()}时先计算整棵树每一层的长度，
+ * 再把整棵树一次性写入同一个字节数组，每个字节只写一次，嵌套多少层都不会重复复制子树。
+ * {@link #put(int, byte[])}会复制一份Value，之后修改原来的数组不影响编码结果；不想复制较大的Value时用{@link #putShared(int, byte[])}。
+ * 嵌套的TLVObject在toByteArray之前的修改会体现在编码结果中，同一个TLVObject也不能直接或间接的put到自己里面
+ * <p/>
+ * Created by lhd on 2015/09/26.
+ */
+public class TLVObject {
+
+    static final String TAG = LogTag.tag("TLVObject");
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    /**
+     * {@link #toByteBuffers()}中单独包装、不复制的Value的最小字节数，更小的Value复制到Tag和Length所在的数组中，避免集中写的缓冲区过多
+     */
+    static final int GATHER_THRESHOLD = 1024;
+
+    private int count;
+
+    /**
+     * 每个子项的tagValue
+     */
+    private int[] tags = new int[DEFAULT_CAPACITY];
+
+    /**
+     * 每个子项Value的字节数，嵌套的TLVObject在{@link #computeSize()}时才能确定，为-1时表示嵌套的TLVObject为空，不编码
+     */
+    private int[] lengths = new int[DEFAULT_CAPACITY];
+
+    /**
+     * 每个子项的Value，byte[]或者嵌套的TLVObject
+     */
+    private Object[] values = new Object[DEFAULT_CAPACITY];
+
+    /**
+     * 最近一次{@link #computeSize()}的结果，写入时使用
+     */
+    private int encodedSize;
+
+    public TLVObject() {
+    }
+
+    public TLVObject put(int tagValue, long value) throws IOException {
+        writeValue(tagValue, TLVUtils.longToByteArray(value));
+        return this;
+    }
+
+    public TLVObject put(int tagValue, String value) throws IOException {
+        if (value != null) {
+            writeValue(tagValue, value.getBytes());
+        } else {
+            writeValue(tagValue, null);
+        }
+        return this;
+    }
+
+    /**
+     * 复制一份value后记录，之后修改value不影响编码结果
+     *
+     * @param tagValue
+     * @param value
+     * @return
+     * @throws IOException
+     */
+    public TLVObject put(int tagValue, byte[] value) throws IOException {
+        writeValue(tagValue, value == null ? null : value.clone());
+        return this;
+    }
+
+    /**
+     * 不复制，直接记录value的引用，适合几MB的Value配合{@link #toByteBuffers()}集中写出。
+     * 调用者在编码（或者写出{@link #toByteBuffers()}的结果）之前不能修改value
+     *
+     * @param tagValue
+     * @param value
+     * @return
+     */
+    public TLVObject putShared(int tagValue, byte[] value) {
+        writeValue(tagValue, value);
+        return this;
+    }
+
+    public TLVObject put(int tagValue, TLVObject tlvObject) {
+        writeTLV(tagValue, tlvObject);
+        return this;
+    }
+
+    private void writeValue(int tagValue, byte[] value) {
+        add(tagValue, value == null ? 0 : value.length, value);
+    }
+
+    private void writeTLV(int tagValue, TLVObject tlvObject) {
+        if (tlvObject != null) {
+            add(tagValue, -1, tlvObject);
+        }
+    }
+
+    private void add(int tagValue, int length, Object value) {
+        if (count == values.length) {
+            int newCapacity = count << 1;
+            tags = Arrays.copyOf(tags, newCapacity);
+            lengths = Arrays.copyOf(lengths, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+        tags[count] = tagValue;
+        lengths[count] = length;
+        values[count] = value;
+        count++;
+    }
+
+    /**
+     * 计算编码后的字节数，嵌套的TLVObject递归计算并记录各自的结果，每个节点只计算一次
+     *
+     * @return
+     */
+    int computeSize() {
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            Object value = values[i];
+            int valueSize;
+            if (value instanceof TLVObject) {
+                valueSize = ((TLVObject) value).computeSize();
+                if (valueSize == 0) {
+                    // 空的TLVObject不编码
+                    lengths[i] = -1;
+                    continue;
+                }
+                lengths[i] = valueSize;
+            } else {
+                valueSize = lengths[i];
+            }
+            size += TLVEncoder.computeTagSize(tags[i]) + TLVEncoder.computeLengthSize(valueSize) + valueSize;
+        }
+        encodedSize = size;
+        return size;
+    }
+
+    /**
+     * 按照最近一次{@link #computeSize()}的结果把整棵树写入dest
+     *
+     * @param dest
+     * @param offset
+     * @return 写入后的下标
+     */
+    int writeTo(byte[] dest, int offset) {
+        for (int i = 0; i < count; i++) {
+            int length = lengths[i];
+            if (length < 0) {
+                continue;
+            }
+            Object value = values[i];
+            int dataType = value instanceof TLVObject ? TLVEncoder.CONSTRUCTED_DATA : TLVEncoder.PRIMITIVE_DATA;
+            offset += TLVEncoder.writeTag(dest, offset, TLVEncoder.PRIMITIVE_FRAME, dataType, tags[i]);
+            offset += TLVEncoder.writeLength(dest, offset, length);
+            if (value instanceof TLVObject) {
+                offset = ((TLVObject) value).writeTo(dest, offset);
+            } else if (value != null) {
+                byte[] bytes = (byte[]) value;
+                System.arraycopy(bytes, 0, dest, offset, bytes.length);
+                offset += bytes.length;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * 计算{@link #toByteBuffers()}时需要单独包装的Value的总字节数，需要先调用{@link #computeSize()}
+     *
+     * @return
+     */
+    private int computeGatheredSize() {
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            if (lengths[i] < 0) {
+                continue;
+            }
+            Object value = values[i];
+            if (value instanceof TLVObject) {
+                size += ((TLVObject) value).computeGatheredSize();
+            } else if (lengths[i] >= GATHER_THRESHOLD) {
+                size += lengths[i];
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 和{@link #writeTo(byte[], int)}相同，但不小于{@link #GATHER_THRESHOLD}的Value不复制，直接包装成单独的ByteBuffer
+     *
+     * @param dest    Tag、Length和较小的Value写入的数组
+     * @param offset  写入dest的下标
+     * @param start   dest中还没有加入buffers的数据的起始下标
+     * @param buffers
+     * @return 写入后的下标，从start开始的数据还没有加入buffers
+     */
+    private int gatherTo(byte[] dest, int offset, int[] start, List<ByteBuffer> buffers) {
+        for (int i = 0; i < count; i++) {
+            int length = lengths[i];
+            if (length < 0) {
+                continue;
+            }
+            Object value = values[i];
+            int dataType = value instanceof TLVObject ? TLVEncoder.CONSTRUCTED_DATA : TLVEncoder.PRIMITIVE_DATA;
+            offset += TLVEncoder.writeTag(dest, offset, TLVEncoder.PRIMITIVE_FRAME, dataType, tags[i]);
+            offset += TLVEncoder.writeLength(dest, offset, length);
+            if (value instanceof TLVObject) {
+                offset = ((TLVObject) value).gatherTo(dest, offset, start, buffers);
+            } else if (length >= GATHER_THRESHOLD) {
+                buffers.add(ByteBuffer.wrap(dest, start[0], offset - start[0]));
+                buffers.add(ByteBuffer.wrap((byte[]) value));
+                start[0] = offset;
+            } else if (value != null) {
+                byte[] bytes = (byte[]) value;
+                System.arraycopy(bytes, 0, dest, offset, bytes.length);
+                offset += bytes.length;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * 编码后的字节数。嵌套的TLVObject可能在put之后还被修改，所以结果不缓存，每次调用都会遍历整棵树，
+     * 需要编码时直接调用{@link #toByteArray()}，不要先调用size()
+     *
+     * @return
+     */
+    public int size() {
+        return computeSize();
+    }
+
+    /**
+     * 把编码结果拆成多个ByteBuffer，可以直接交给{@link GatheringByteChannel#write(ByteBuffer[])}：
+     * 所有的Tag、Length和较小的Value按顺序写入一个数组，不小于{@link #GATHER_THRESHOLD}的Value直接包装记录的byte[]，
+     * 不复制到合并的数组中，适合用{@link #putShared(int, byte[])}放入几MB的Value的消息。ByteBuffer和putShared进来的byte[]共享内容，写出之前不能修改
+     *
+     * @return 按顺序排列的ByteBuffer，拼起来和{@link #toByteArray()}的结果相同
+     */
+    public ByteBuffer[] toByteBuffers() {
+        int size = computeSize();
+        byte[] dest = new byte[size - computeGatheredSize()];
+        int[] start = new int[1];
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        int offset = gatherTo(dest, 0, start, buffers);
+        if (offset > start[0] || buffers.isEmpty()) {
+            buffers.add(ByteBuffer.wrap(dest, start[0], offset - start[0]));
+        }
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onEncoded(size);
+        }
+        return buffers.toArray(new ByteBuffer[buffers.size()]);
+    }
+
+    /**
+     * 用集中写把整棵树写入channel，较大的Value不会被复制，见{@link #toByteBuffers()}。
+     * 阻塞到全部写完才返回，channel必须是阻塞模式，见{@link TLVUtils#writeFully(GatheringByteChannel, ByteBuffer[])}
+     *
+     * @param channel
+     * @return 写入的字节数
+     * @throws IOException
+     * @throws IllegalArgumentException channel是非阻塞模式
+     */
+    public long writeTo(GatheringByteChannel channel) throws IOException {
+        return TLVUtils.writeFully(channel, toByteBuffers());
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[computeSize()];
+        writeTo(bytes, 0);
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onEncoded(bytes.length);
+        }
+        return bytes;
+    }
+
+    public String toBinaryString() {
+        return new BigInteger(1, toByteArray()).toString(2);
+    }
+
+    @Override
+    public String toString() {
+        String result = null;
+        try {
+            result = TLVDecoder.decode(toByteArray()).toString();
+        } catch (Throwable throwable) {
+            throwable.printStackTrace();
+        }
+        return result;
+    }
+}
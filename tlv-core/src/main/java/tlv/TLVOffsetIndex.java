@@ -0,0 +1,394 @@
+package tlv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TLV文件旁边的偏移量索引，记录每个最外层TLV的序号、tagValue和在文件中的位置，
+ * 不用从头扫描TLV文件就可以直接定位到第N个TLV，或者找出某个tagValue的所有TLV。
+ * <p/>
+ * 索引文件由16字节的文件头（magic、版本号、已索引数据的结束位置）和每个TLV一条的12字节记录（位置、tagValue）组成，
+ * 记录按TLV在文件中的顺序排列，可以随着TLV文件的追加增量更新，见{@link #update(TLVMappedFile)}。
+ * 打开时所有记录读入内存，按序号查找为O(1)，按位置查找序号为O(log n)，按tagValue查找只访问这个tagValue的记录。
+ * 此类不是线程安全的
+ */
+public class TLVOffsetIndex implements Closeable {
+
+    /**
+     * 索引文件的扩展名，索引文件和TLV文件在同一个目录下
+     */
+    public static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * "TLVI"
+     */
+    private static final int MAGIC = 0x544c5649;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int ENTRY_SIZE = 12;
+
+    /**
+     * 缓冲的记录条数，满了之后写入索引文件
+     */
+    private static final int BUFFERED_ENTRIES = 1024;
+
+    private final RandomAccessFile file;
+
+    private final FileChannel channel;
+
+    private long[] offsets = new long[16];
+
+    private int[] tagValues = new int[16];
+
+    private int count = 0;
+
+    /**
+     * 已经写入索引文件的记录条数
+     */
+    private int flushedCount = 0;
+
+    /**
+     * 已索引数据的结束位置，也就是最后一个TLV之后的位置
+     */
+    private long dataEnd = 0;
+
+    /**
+     * 每个tagValue的TLV序号，按序号从小到大排列
+     */
+    private final Map<Integer, Postings> postings = new HashMap<Integer, Postings>();
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFERED_ENTRIES * ENTRY_SIZE);
+
+    /**
+     * 打开索引文件，不存在时创建空的索引
+     *
+     * @param indexFile
+     * @throws IOException 索引文件格式不正确
+     */
+    public TLVOffsetIndex(File indexFile) throws IOException {
+        file = new RandomAccessFile(indexFile, "rw");
+        channel = file.getChannel();
+        try {
+            load();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 打开TLV文件的索引（TLV文件名加上{@link #INDEX_SUFFIX}），并补上索引之后追加到TLV文件中的TLV
+     *
+     * @param dataFile
+     * @return
+     * @throws IOException
+     */
+    public static TLVOffsetIndex open(File dataFile) throws IOException {
+        TLVOffsetIndex index = new TLVOffsetIndex(indexFileOf(dataFile));
+        TLVMappedFile data = null;
+        try {
+            data = new TLVMappedFile(dataFile);
+            index.update(data);
+        } catch (IOException e) {
+            index.close();
+            throw e;
+        } finally {
+            if (data != null) {
+                data.close();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * TLV文件对应的索引文件
+     *
+     * @param dataFile
+     * @return
+     */
+    public static File indexFileOf(File dataFile) {
+        return new File(dataFile.getPath() + INDEX_SUFFIX);
+    }
+
+    /**
+     * 从已索引数据的结束位置开始，把TLV文件中新追加的TLV加入索引并写入索引文件
+     *
+     * @param data 被索引的TLV文件，调用后它的当前位置在最后一个完整TLV之后
+     * @return 新加入索引的TLV个数
+     * @throws IOException
+     */
+    public int update(TLVMappedFile data) throws IOException {
+        int added = 0;
+        data.seek(dataEnd);
+        ByteBuffer frame;
+        while ((frame = data.nextFrame()) != null) {
+            int tagBytesSize = TLVDecoder.getTagBytesSize(frame, 0, frame.limit());
+            add(data.getFrameOffset(), TLVDecoder.decodeTagValue(frame, 0, tagBytesSize), frame.limit());
+            added++;
+        }
+        flush();
+        return added;
+    }
+
+    /**
+     * 追加一条记录，适合一边写TLV文件一边建立索引。记录先缓冲在内存中，{@link #flush()}或{@link #close()}时写入索引文件
+     *
+     * @param offset         TLV在文件中的位置，不能小于上一个TLV的结束位置
+     * @param tagValue       TLV的tagValue
+     * @param totalBytesSize TLV占用的总字节数
+     * @throws IOException
+     */
+    public void add(long offset, int tagValue, int totalBytesSize) throws IOException {
+        if (offset < dataEnd) {
+            throw new IllegalArgumentException("the offset " + offset + " is before the end of the indexed data " + dataEnd);
+        }
+        if (!buffer.hasRemaining()) {
+            writeBuffer();
+        }
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count << 1);
+            tagValues = Arrays.copyOf(tagValues, count << 1);
+        }
+        offsets[count] = offset;
+        tagValues[count] = tagValue;
+        addPosting(tagValue, count);
+        count++;
+        dataEnd = offset + totalBytesSize;
+        buffer.putLong(offset);
+        buffer.putInt(tagValue);
+    }
+
+    /**
+     * 索引中的TLV个数
+     *
+     * @return
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 已索引数据的结束位置
+     *
+     * @return
+     */
+    public long getDataEnd() {
+        return dataEnd;
+    }
+
+    /**
+     * 第ordinal个TLV在文件中的位置，可以用{@link TLVMappedFile#seek(long)}跳过去
+     *
+     * @param ordinal 从0开始的序号
+     * @return
+     */
+    public long getOffset(int ordinal) {
+        checkOrdinal(ordinal);
+        return offsets[ordinal];
+    }
+
+    /**
+     * 第ordinal个TLV的tagValue
+     *
+     * @param ordinal 从0开始的序号
+     * @return
+     */
+    public int getTagValue(int ordinal) {
+        checkOrdinal(ordinal);
+        return tagValues[ordinal];
+    }
+
+    /**
+     * 查找从offset开始的TLV的序号
+     *
+     * @param offset
+     * @return offset不是某个TLV的起始位置时返回-1
+     */
+    public int getOrdinal(long offset) {
+        int ordinal = Arrays.binarySearch(offsets, 0, count, offset);
+        return ordinal < 0 ? -1 : ordinal;
+    }
+
+    /**
+     * 某个tagValue的所有TLV的序号
+     *
+     * @param tagValue
+     * @return 按序号从小到大排列，没有时返回空数组
+     */
+    public int[] getOrdinals(int tagValue) {
+        Postings p = postings.get(tagValue);
+        if (p == null) {
+            return new int[0];
+        }
+        return Arrays.copyOf(p.ordinals, p.size);
+    }
+
+    /**
+     * 某个tagValue的所有TLV在文件中的位置
+     *
+     * @param tagValue
+     * @return 按位置从小到大排列，没有时返回空数组
+     */
+    public long[] getOffsets(int tagValue) {
+        Postings p = postings.get(tagValue);
+        if (p == null) {
+            return new long[0];
+        }
+        long[] result = new long[p.size];
+        for (int i = 0; i < p.size; i++) {
+            result[i] = offsets[p.ordinals[i]];
+        }
+        return result;
+    }
+
+    /**
+     * 把缓冲的记录写入索引文件并更新文件头
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        writeBuffer();
+        writeHeader();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (channel.isOpen()) {
+                flush();
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize == 0) {
+            writeHeader();
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        if (fileSize < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("not a tlv offset index file");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported tlv offset index version " + version);
+        }
+        long entries = (fileSize - HEADER_SIZE) / ENTRY_SIZE;
+        if (entries > Integer.MAX_VALUE - 8) {
+            throw new IOException("too many entries in tlv offset index: " + entries);
+        }
+        int n = (int) entries;
+        offsets = new long[Math.max(n, 16)];
+        tagValues = new int[Math.max(n, 16)];
+        ByteBuffer chunk = ByteBuffer.allocate(BUFFERED_ENTRIES * ENTRY_SIZE);
+        long position = HEADER_SIZE;
+        int loaded = 0;
+        while (loaded < n) {
+            chunk.clear();
+            chunk.limit(Math.min(n - loaded, BUFFERED_ENTRIES) * ENTRY_SIZE);
+            readFully(chunk, position);
+            position += chunk.limit();
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                offsets[loaded] = chunk.getLong();
+                tagValues[loaded] = chunk.getInt();
+                addPosting(tagValues[loaded], loaded);
+                loaded++;
+            }
+        }
+        // 文件头在记录之后写入，上次没有正常关闭时最后几条记录可能没有计入文件头中的结束位置，
+        // 这些TLV的大小未知，丢弃后由下一次update重新索引
+        dataEnd = header.getLong();
+        while (n > 0 && offsets[n - 1] >= dataEnd) {
+            n--;
+            removeLastPosting(tagValues[n]);
+        }
+        count = n;
+        flushedCount = n;
+        // 截掉不完整的记录以及需要重新索引的记录
+        channel.truncate(HEADER_SIZE + (long) flushedCount * ENTRY_SIZE);
+        writeHeader();
+    }
+
+    private void writeBuffer() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        long position = HEADER_SIZE + (long) flushedCount * ENTRY_SIZE;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+        flushedCount = count;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(dataEnd).flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    private void readFully(ByteBuffer dest, long position) throws IOException {
+        while (dest.hasRemaining()) {
+            int n = channel.read(dest, position);
+            if (n < 0) {
+                break;
+            }
+            position += n;
+        }
+    }
+
+    private void addPosting(int tagValue, int ordinal) {
+        Postings p = postings.get(tagValue);
+        if (p == null) {
+            p = new Postings();
+            postings.put(tagValue, p);
+        }
+        if (p.size == p.ordinals.length) {
+            p.ordinals = Arrays.copyOf(p.ordinals, p.size << 1);
+        }
+        p.ordinals[p.size++] = ordinal;
+    }
+
+    private void removeLastPosting(int tagValue) {
+        Postings p = postings.get(tagValue);
+        if (--p.size == 0) {
+            postings.remove(tagValue);
+        }
+    }
+
+    private void checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= count) {
+            throw new IndexOutOfBoundsException("ordinal: " + ordinal + ", size: " + count);
+        }
+    }
+
+    /**
+     * 一个tagValue的TLV序号列表
+     */
+    private static class Postings {
+
+        int[] ordinals = new int[4];
+
+        int size = 0;
+    }
+}
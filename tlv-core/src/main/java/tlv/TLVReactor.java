@@ -0,0 +1,339 @@
+package tlv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 基于{@link Selector}的非阻塞TLV连接引擎：一个反应器线程负责所有连接的接受、读写和分帧，
+ * 完整的TLV解析后交给{@link TLVHandler}，发送通过{@link TLVConnection#send(TLVObject)}进入各连接的发送队列。
+ * 连接数不再受线程数限制，适合替代每个连接一个线程加{@link TLVByteBuffer}的阻塞模型：
+ * <pre>
+ * TLVReactor reactor = new TLVReactor(handler);
+ * InetSocketAddress address = reactor.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+ * reactor.start();
+ * TLVConnection connection = reactor.connect(address);
+ * connection.send(tlvObject);
+ * </pre>
+ * 除了{@link TLVHandler}的回调，所有方法都可以在任意线程中调用，对选择器的操作都转交给反应器线程执行。
+ * 收到的每个TLV都经过{@link TLVValidator}校验，没有通过的连接会被关闭
+ */
+public class TLVReactor implements Closeable {
+
+    private final TLVHandler handler;
+
+    private final TLVValidator validator;
+
+    private final TLVCompressor compressor;
+
+    private final Selector selector;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+    private final List<ServerSocketChannel> servers = new ArrayList<ServerSocketChannel>();
+
+    private final Set<TLVConnection> connections = new HashSet<TLVConnection>();
+
+    private final Thread thread;
+
+    private volatile boolean running = false;
+
+    public TLVReactor(TLVHandler handler) throws IOException {
+        this(handler, TLVValidator.DEFAULT);
+    }
+
+    /**
+     * @param handler
+     * @param validator 校验收到的TLV的校验器，为null时不校验
+     * @throws IOException
+     */
+    public TLVReactor(TLVHandler handler, TLVValidator validator) throws IOException {
+        this(handler, validator, null);
+    }
+
+    /**
+     * @param handler
+     * @param validator  校验收到的TLV的校验器，为null时不校验
+     * @param compressor 收到压缩过的TLV时用它解压后再交给handler，解压出的TLV同样经过validator校验；为null时不解压
+     * @throws IOException
+     */
+    public TLVReactor(TLVHandler handler, TLVValidator validator, TLVCompressor compressor) throws IOException {
+        this.handler = handler;
+        this.validator = validator;
+        this.compressor = compressor;
+        this.selector = Selector.open();
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "TLVReactor");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * 启动反应器线程
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * 在address上监听，接受的连接由反应器管理
+     *
+     * @param address 端口为0时由系统分配
+     * @return 实际监听的地址
+     * @throws IOException
+     */
+    public InetSocketAddress bind(SocketAddress address) throws IOException {
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.configureBlocking(false);
+            server.socket().setReuseAddress(true);
+            server.socket().bind(address);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    server.register(selector, SelectionKey.OP_ACCEPT);
+                    servers.add(server);
+                } catch (IOException e) {
+                    closeQuietly(server);
+                }
+            }
+        });
+        return (InetSocketAddress) server.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * 连接到address，返回的连接可以立即发送数据，数据在连接建立后写出；连接失败时回调{@link TLVHandler#onClose(TLVConnection, Throwable)}
+     *
+     * @param address
+     * @return
+     * @throws IOException
+     */
+    public TLVConnection connect(SocketAddress address) throws IOException {
+        final SocketChannel channel = SocketChannel.open();
+        final boolean connected;
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            connected = channel.connect(address);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        final TLVConnection connection = new TLVConnection(this, channel, validator, compressor);
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                register(connection, connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, connected);
+            }
+        });
+        return connection;
+    }
+
+    /**
+     * 停止反应器线程，关闭所有监听和连接。在其他线程中调用时等待反应器线程退出；
+     * 在{@link TLVHandler}的回调中调用时不能等待自己，本轮事件处理完后才真正关闭
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if (!running) {
+            selector.close();
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 在反应器线程中执行task，当前就是反应器线程时在本轮事件处理完后执行
+     *
+     * @param task
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * 连接关闭后由{@link TLVConnection#closeNow(Throwable)}调用
+     */
+    void closed(TLVConnection connection, Throwable cause) {
+        connections.remove(connection);
+        try {
+            handler.onClose(connection, cause);
+        } catch (Throwable e) {
+            // handler的异常不能中断反应器线程
+        }
+    }
+
+    private void loop() {
+        try {
+            while (running) {
+                if (tasks.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.selectNow();
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept((ServerSocketChannel) key.channel());
+                        continue;
+                    }
+                    TLVConnection connection = (TLVConnection) key.attachment();
+                    if (key.isConnectable()) {
+                        finishConnect(connection, key);
+                        continue;
+                    }
+                    if (key.isReadable()) {
+                        connection.read(handler);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                }
+                runTasks();
+            }
+        } catch (IOException e) {
+            // 选择器本身出错，关闭所有连接
+        } catch (ClosedSelectorException e) {
+            // 已经关闭
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                // 任务的异常不能中断反应器线程
+            }
+        }
+    }
+
+    private void accept(ServerSocketChannel server) {
+        SocketChannel channel;
+        try {
+            while ((channel = server.accept()) != null) {
+                try {
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+                } catch (IOException e) {
+                    closeQuietly(channel);
+                    continue;
+                }
+                register(new TLVConnection(this, channel, validator, compressor), SelectionKey.OP_READ, true);
+            }
+        } catch (IOException e) {
+            // 本次接受失败，下次可接受时重试
+        }
+    }
+
+    private void finishConnect(TLVConnection connection, SelectionKey key) {
+        try {
+            if (!connection.channel().finishConnect()) {
+                return;
+            }
+        } catch (IOException e) {
+            connection.closeNow(e);
+            return;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        opened(connection);
+    }
+
+    private void register(TLVConnection connection, int ops, boolean connected) {
+        connections.add(connection);
+        try {
+            connection.setKey(connection.channel().register(selector, ops, connection));
+        } catch (IOException e) {
+            connection.closeNow(e);
+            return;
+        }
+        if (connected) {
+            opened(connection);
+        }
+    }
+
+    private void opened(TLVConnection connection) {
+        try {
+            handler.onOpen(connection);
+        } catch (Throwable e) {
+            connection.closeNow(e);
+            return;
+        }
+        // 连接建立之前发送的数据
+        connection.flush();
+    }
+
+    private void shutdown() {
+        for (ServerSocketChannel server : servers) {
+            closeQuietly(server);
+        }
+        servers.clear();
+        List<TLVConnection> open = new ArrayList<TLVConnection>(connections);
+        for (TLVConnection connection : open) {
+            connection.closeNow(null);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // 忽略关闭时的异常
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // 忽略关闭时的异常
+        }
+    }
+}
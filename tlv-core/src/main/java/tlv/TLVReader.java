@@ -0,0 +1,449 @@
+package tlv;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * 流式TLV读取器（拉模式，类似StAX），从InputStream或channel中逐个读出TLV事件，不构建{@link TLVDecodeResult}树：
+ * <pre>
+ * TLVReader reader = new TLVReader(in);
+ * int event;
+ * while ((event = reader.next()) != TLVReader.END_DOCUMENT) {
+ *     if (event == TLVReader.PRIMITIVE &amp;&amp; reader.getTagValue() == 1) {
+ *         long id = reader.getLongValue();
+ *     }
+ * }
+ * </pre>
+ * 内存占用只和读缓冲区、嵌套深度以及需要读取的最大Value有关，和整个数据的大小无关，
+ * 超过maxValueSize的Value可以通过{@link #getValueStream()}分段读取。Tag和Length的解析规则复用{@link TLVDecoder}。
+ * 此类不是线程安全的
+ */
+public class TLVReader implements Closeable {
+
+    /**
+     * Constructed类型TLV开始，此时可以读取Tag和Length，接下来的事件是它的子TLV
+     */
+    public static final int START_CONSTRUCTED = 1;
+
+    /**
+     * Primitive类型TLV，此时可以读取Tag、Length和Value
+     */
+    public static final int PRIMITIVE = 2;
+
+    /**
+     * Constructed类型TLV结束，Tag和Length与对应的{@link #START_CONSTRUCTED}相同
+     */
+    public static final int END_CONSTRUCTED = 3;
+
+    /**
+     * 数据全部读完
+     */
+    public static final int END_DOCUMENT = 4;
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int DEFAULT_MAX_VALUE_SIZE = 1024 * 1024;
+
+    private static final int DEFAULT_MAX_DEPTH = 64;
+
+    private final InputStream in;
+
+    private final int maxValueSize;
+
+    private final int maxDepth;
+
+    private byte[] buf;
+
+    /**
+     * buf中下一个未读字节的下标
+     */
+    private int pos;
+
+    /**
+     * buf中有效数据的结束下标（不包含）
+     */
+    private int lim;
+
+    /**
+     * buf[pos]在整个数据流中的偏移量
+     */
+    private long position;
+
+    private final byte[] header = new byte[TLVValidator.MAX_TAG_BYTES];
+
+    /**
+     * 尚未结束的Constructed类型TLV的Value结束偏移量
+     */
+    private long[] endStack = new long[8];
+
+    private int[] tagStack = new int[8];
+
+    private int[] lengthStack = new int[8];
+
+    private int depth;
+
+    private int event;
+
+    private long eventOffset;
+
+    private int frameType;
+
+    private int dataType;
+
+    private int tagValue;
+
+    private int length;
+
+    /**
+     * 当前Primitive类型TLV还没有被跳过或读取的Value字节数
+     */
+    private int valueRemaining;
+
+    /**
+     * 当前Value已经完整加载到buf中时，Value在buf中的起始下标，否则为-1
+     */
+    private int valueOffset = -1;
+
+    public TLVReader(InputStream in) {
+        this(in, DEFAULT_MAX_VALUE_SIZE, DEFAULT_MAX_DEPTH);
+    }
+
+    public TLVReader(ReadableByteChannel channel) {
+        this(Channels.newInputStream(channel));
+    }
+
+    /**
+     * @param in
+     * @param maxValueSize {@link #getValueArray()}等方法一次加载的最大Value字节数
+     * @param maxDepth     Constructed类型的最大嵌套深度
+     */
+    public TLVReader(InputStream in, int maxValueSize, int maxDepth) {
+        if (maxValueSize <= 0 || maxDepth <= 0) {
+            throw new IllegalArgumentException("maxValueSize and maxDepth must be greater than 0.");
+        }
+        this.in = in;
+        this.maxValueSize = maxValueSize;
+        this.maxDepth = maxDepth;
+        this.buf = new byte[Math.min(DEFAULT_BUFFER_SIZE, Math.max(maxValueSize, TLVValidator.MAX_TAG_BYTES + TLVValidator.MAX_LENGTH_BYTES))];
+    }
+
+    /**
+     * 读取下一个事件，当前Primitive类型TLV中没有读取的Value会被跳过
+     *
+     * @return {@link #START_CONSTRUCTED}、{@link #PRIMITIVE}、{@link #END_CONSTRUCTED}或{@link #END_DOCUMENT}
+     * @throws IOException 数据不完整或者格式错误
+     */
+    public int next() throws IOException {
+        if (event == END_DOCUMENT) {
+            return event;
+        }
+        if (valueRemaining > 0) {
+            skip(valueRemaining);
+            valueRemaining = 0;
+        }
+        valueOffset = -1;
+
+        if (depth > 0 && position == endStack[depth - 1]) {
+            depth--;
+            eventOffset = position;
+            tagValue = tagStack[depth];
+            length = lengthStack[depth];
+            dataType = TLVEncoder.CONSTRUCTED_DATA;
+            return event = END_CONSTRUCTED;
+        }
+
+        eventOffset = position;
+        if (depth == 0 && !ensureAvailable(1)) {
+            return event = END_DOCUMENT;
+        }
+        int tagBytesSize = TLVValidator.tagBytesSize(header, 0, readHeaderPart(TLVValidator.MAX_TAG_BYTES));
+        if (tagBytesSize <= 0) {
+            throw new IOException("tlv tag is invalid at offset " + eventOffset);
+        }
+        frameType = TLVDecoder.decodeFrameType(header, 0);
+        dataType = TLVDecoder.decodeDataType(header, 0);
+        tagValue = TLVDecoder.decodeTagValue(header, 0, tagBytesSize);
+        int lengthBytesSize = TLVValidator.lengthBytesSize(header, 0, readHeaderPart(TLVValidator.MAX_LENGTH_BYTES));
+        if (lengthBytesSize <= 0) {
+            throw new IOException("tlv length is invalid at offset " + eventOffset);
+        }
+        length = TLVDecoder.decodeLength(header, 0, lengthBytesSize);
+        if (depth > 0 && position + length > endStack[depth - 1]) {
+            throw new IOException("tlv at offset " + eventOffset + " exceeds its parent");
+        }
+
+        if (dataType == TLVEncoder.CONSTRUCTED_DATA) {
+            push(position + length);
+            return event = START_CONSTRUCTED;
+        }
+        valueRemaining = length;
+        return event = PRIMITIVE;
+    }
+
+    /**
+     * 当前事件类型
+     *
+     * @return
+     */
+    public int getEvent() {
+        return event;
+    }
+
+    /**
+     * 当前Constructed类型的嵌套深度，最外层为0
+     *
+     * @return
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * 当前TLV的Tag在整个数据流中的偏移量，{@link #END_CONSTRUCTED}时是结束位置
+     *
+     * @return
+     */
+    public long getOffset() {
+        return eventOffset;
+    }
+
+    public int getFrameType() {
+        return frameType;
+    }
+
+    public int getDataType() {
+        return dataType;
+    }
+
+    public int getTagValue() {
+        return tagValue;
+    }
+
+    /**
+     * 当前TLV的Value字节数
+     *
+     * @return
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * 把当前Primitive类型TLV的Value加载到内部缓冲区，返回缓冲区本身，Value在其中的位置见{@link #getValueOffset()}。
+     * 返回的数组在下一次调用{@link #next()}之后失效
+     *
+     * @return
+     * @throws IOException Value超过maxValueSize或者数据不完整
+     */
+    public byte[] getValueArray() throws IOException {
+        loadValue();
+        return buf;
+    }
+
+    public int getValueOffset() throws IOException {
+        loadValue();
+        return valueOffset;
+    }
+
+    /**
+     * 复制一份当前Primitive类型TLV的Value
+     *
+     * @return
+     * @throws IOException
+     */
+    public byte[] getValue() throws IOException {
+        loadValue();
+        byte[] value = new byte[length];
+        System.arraycopy(buf, valueOffset, value, 0, length);
+        return value;
+    }
+
+    public int getIntValue() throws IOException {
+        return (int) getLongValue();
+    }
+
+    public long getLongValue() throws IOException {
+        loadValue();
+        return TLVUtils.byteArrayToLong(buf, valueOffset, length);
+    }
+
+    public String getStringValue() throws IOException {
+        loadValue();
+        return new String(buf, valueOffset, length);
+    }
+
+    /**
+     * 以流的方式读取当前Primitive类型TLV的Value，适合超过maxValueSize的Value。
+     * 返回的流只能读到当前Value的末尾，在下一次调用{@link #next()}之后失效，没有读完的部分会被跳过
+     *
+     * @return
+     */
+    public InputStream getValueStream() {
+        checkPrimitive();
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                if (valueRemaining == 0 || !ensureAvailable(1)) {
+                    return -1;
+                }
+                valueRemaining--;
+                position++;
+                return buf[pos++] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (valueRemaining == 0 || !ensureAvailable(1)) {
+                    return -1;
+                }
+                int n = Math.min(Math.min(len, valueRemaining), lim - pos);
+                System.arraycopy(buf, pos, b, off, n);
+                pos += n;
+                position += n;
+                valueRemaining -= n;
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return Math.min(valueRemaining, lim - pos);
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void checkPrimitive() {
+        if (event != PRIMITIVE) {
+            throw new IllegalStateException("the current event is not PRIMITIVE.");
+        }
+    }
+
+    /**
+     * 保证当前Value完整的位于buf中，Value在读取完之前不移动pos，由{@link #next()}统一跳过
+     *
+     * @throws IOException
+     */
+    private void loadValue() throws IOException {
+        checkPrimitive();
+        if (valueOffset >= 0) {
+            return;
+        }
+        if (valueRemaining != length) {
+            throw new IllegalStateException("the value has been partially read by getValueStream().");
+        }
+        if (length > maxValueSize) {
+            throw new IOException("the value size " + length + " exceeds " + maxValueSize + ", use getValueStream() instead.");
+        }
+        if (!ensureAvailable(length) && length > 0) {
+            throw new EOFException("tlv value is incomplete at offset " + eventOffset);
+        }
+        valueOffset = pos;
+    }
+
+    /**
+     * 读取Tag或Length到{@link #header}中，两者都以最高位为0的字节结束，是否合法由{@link TLVValidator}检查
+     *
+     * @param maxBytes 最多读取的字节数，Tag是{@link TLVValidator#MAX_TAG_BYTES}，Length是{@link TLVValidator#MAX_LENGTH_BYTES}
+     * @return 读取的字节数，读满maxBytes仍然没有结束时返回maxBytes
+     * @throws IOException
+     */
+    private int readHeaderPart(int maxBytes) throws IOException {
+        for (int i = 0; i < maxBytes; i++) {
+            if (!ensureAvailable(1)) {
+                throw new EOFException("tlv header is incomplete at offset " + eventOffset);
+            }
+            byte b = buf[pos++];
+            position++;
+            header[i] = b;
+            if ((b & 0x80) == 0x00) {
+                return i + 1;
+            }
+        }
+        return maxBytes;
+    }
+
+    private void push(long end) throws IOException {
+        if (depth == maxDepth) {
+            throw new IOException("tlv nesting depth exceeds " + maxDepth + " at offset " + eventOffset);
+        }
+        if (depth == endStack.length) {
+            int newSize = Math.min(depth << 1, maxDepth);
+            endStack = Arrays.copyOf(endStack, newSize);
+            tagStack = Arrays.copyOf(tagStack, newSize);
+            lengthStack = Arrays.copyOf(lengthStack, newSize);
+        }
+        endStack[depth] = end;
+        tagStack[depth] = tagValue;
+        lengthStack[depth] = length;
+        depth++;
+    }
+
+    /**
+     * 跳过n个字节，已经在buf中的直接移动下标，其余的从流中跳过
+     *
+     * @param n
+     * @throws IOException
+     */
+    private void skip(int n) throws IOException {
+        int buffered = Math.min(n, lim - pos);
+        pos += buffered;
+        position += buffered;
+        n -= buffered;
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("tlv value is incomplete at offset " + eventOffset);
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+            position += skipped;
+        }
+    }
+
+    /**
+     * 保证buf中至少有n个未读字节，必要时把未读数据移动到头部或者扩容
+     *
+     * @param n
+     * @return 数据流已经结束，无法读满n个字节时返回false
+     * @throws IOException
+     */
+    private boolean ensureAvailable(int n) throws IOException {
+        if (lim - pos >= n) {
+            return true;
+        }
+        if (pos + n > buf.length) {
+            int unread = lim - pos;
+            if (n > buf.length) {
+                byte[] newBuf = new byte[Math.max(n, Math.min(buf.length << 1, maxValueSize))];
+                System.arraycopy(buf, pos, newBuf, 0, unread);
+                buf = newBuf;
+            } else {
+                System.arraycopy(buf, pos, buf, 0, unread);
+            }
+            pos = 0;
+            lim = unread;
+        }
+        while (lim - pos < n) {
+            int read = in.read(buf, lim, buf.length - lim);
+            if (read < 0) {
+                return false;
+            }
+            lim += read;
+        }
+        return true;
+    }
+}
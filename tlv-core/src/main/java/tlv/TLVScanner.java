@@ -0,0 +1,285 @@
+package tlv;
+
+import java.util.Arrays;
+
+/**
+ * TLV统计扫描器：一次遍历统计节点个数、最大嵌套深度、每个tagValue出现的次数和Primitive类型Value的总字节数，
+ * 不解析出{@link TLVDecodeResult}，也不复制任何数据，适合在解析之前对每个消息做准入控制。
+ * <p/>
+ * 遍历用显式的下标栈代替递归，嵌套再深也不会栈溢出；栈和tagValue计数表在扫描之间复用，
+ * 只有在出现更深的嵌套或更多种tagValue时才扩容，稳定之后扫描不分配内存。
+ * 每次扫描会覆盖上一次的结果，此类不是线程安全的，每个线程使用自己的实例
+ */
+public class TLVScanner {
+
+    private static final int INITIAL_DEPTH = 16;
+
+    private static final int INITIAL_TAG_CAPACITY = 16;
+
+    /**
+     * 小于这个值的tagValue直接按下标查找计数，不经过散列表
+     */
+    private static final int DIRECT_LOOKUP_LIMIT = 1024;
+
+    /**
+     * 每一层Constructed类型TLV的Value结束下标，ends[0]是整段数据的结束下标
+     */
+    private int[] ends = new int[INITIAL_DEPTH];
+
+    /**
+     * 按第一次出现的顺序记录的tagValue和出现次数
+     */
+    private int[] tagValues = new int[INITIAL_TAG_CAPACITY];
+
+    private int[] tagCounts = new int[INITIAL_TAG_CAPACITY];
+
+    private int tagValueCount;
+
+    /**
+     * 小于{@link #DIRECT_LOOKUP_LIMIT}的tagValue到tagValues下标加1的映射，0表示没有出现过
+     */
+    private final int[] directSlots = new int[DIRECT_LOOKUP_LIMIT];
+
+    /**
+     * 开放寻址的散列表，保存其余tagValue到tagValues下标加1的映射，0表示空位，容量是2的幂并且至少是其中tagValue种数的两倍
+     */
+    private int[] tableKeys = new int[INITIAL_TAG_CAPACITY * 2];
+
+    private int[] tableSlots = new int[INITIAL_TAG_CAPACITY * 2];
+
+    private int tableSize;
+
+    private int nodeCount;
+
+    private int constructedCount;
+
+    private int maxDepth;
+
+    private long payloadBytes;
+
+    /**
+     * 扫描字节数组中[offset, offset + length)范围内首尾相连的一个或多个TLV
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @return 节点总数；数据不完整或格式错误时返回{@link TLVValidator}中对应的负数错误码，此时已经统计的结果只包含出错之前的节点
+     */
+    public int scan(byte[] bytes, int offset, int length) {
+        reset();
+        int position = offset;
+        int depth = 0;
+        ends[0] = offset + length;
+        while (true) {
+            int end = ends[depth];
+            if (position >= end) {
+                if (depth == 0) {
+                    return nodeCount;
+                }
+                depth--;
+                continue;
+            }
+            int tagBytesSize = TLVValidator.tagBytesSize(bytes, position, end);
+            if (tagBytesSize <= 0) {
+                return tagBytesSize == TLVValidator.INCOMPLETE ? TLVValidator.CHILD_OUT_OF_BOUNDS : tagBytesSize;
+            }
+            int lengthOffset = position + tagBytesSize;
+            int lengthBytesSize = TLVValidator.lengthBytesSize(bytes, lengthOffset, end);
+            if (lengthBytesSize <= 0) {
+                return lengthBytesSize == TLVValidator.INCOMPLETE ? TLVValidator.CHILD_OUT_OF_BOUNDS : lengthBytesSize;
+            }
+            int valueOffset = lengthOffset + lengthBytesSize;
+            int valueBytesSize = TLVDecoder.decodeLength(bytes, lengthOffset, lengthBytesSize);
+            if (valueBytesSize > end - valueOffset) {
+                return TLVValidator.CHILD_OUT_OF_BOUNDS;
+            }
+            nodeCount++;
+            if (depth + 1 > maxDepth) {
+                maxDepth = depth + 1;
+            }
+            countTag(TLVDecoder.decodeTagValue(bytes, position, tagBytesSize));
+            if (TLVDecoder.decodeDataType(bytes, position) == TLVEncoder.CONSTRUCTED_DATA) {
+                constructedCount++;
+                if (++depth == ends.length) {
+                    ends = Arrays.copyOf(ends, ends.length << 1);
+                }
+                ends[depth] = valueOffset + valueBytesSize;
+                position = valueOffset;
+            } else {
+                payloadBytes += valueBytesSize;
+                position = valueOffset + valueBytesSize;
+            }
+        }
+    }
+
+    public int scan(byte[] bytes) {
+        return scan(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 节点总数，包括Constructed类型的TLV和它们的所有子孙
+     *
+     * @return
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getConstructedCount() {
+        return constructedCount;
+    }
+
+    /**
+     * 最大嵌套深度，最外层TLV的深度为1
+     *
+     * @return
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Primitive类型TLV的Value总字节数
+     *
+     * @return
+     */
+    public long getPayloadBytes() {
+        return payloadBytes;
+    }
+
+    /**
+     * tagValue出现的次数
+     *
+     * @param tagValue
+     * @return
+     */
+    public int getTagCount(int tagValue) {
+        if (isDirect(tagValue)) {
+            int slot = directSlots[tagValue];
+            return slot == 0 ? 0 : tagCounts[slot - 1];
+        }
+        int mask = tableKeys.length - 1;
+        for (int i = hash(tagValue) & mask; tableSlots[i] != 0; i = (i + 1) & mask) {
+            if (tableKeys[i] == tagValue) {
+                return tagCounts[tableSlots[i] - 1];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 出现过的tagValue的种数，和{@link #getTagValueAt(int)}、{@link #getTagCountAt(int)}一起按第一次出现的顺序遍历直方图
+     *
+     * @return
+     */
+    public int getTagValueCount() {
+        return tagValueCount;
+    }
+
+    public int getTagValueAt(int index) {
+        checkIndex(index);
+        return tagValues[index];
+    }
+
+    public int getTagCountAt(int index) {
+        checkIndex(index);
+        return tagCounts[index];
+    }
+
+    private void reset() {
+        // 只清除上一次用过的位置，清除的开销和tagValue种数成正比
+        int mask = tableKeys.length - 1;
+        for (int t = 0; t < tagValueCount; t++) {
+            int tagValue = tagValues[t];
+            if (isDirect(tagValue)) {
+                directSlots[tagValue] = 0;
+                continue;
+            }
+            int i = hash(tagValue) & mask;
+            while (tableKeys[i] != tagValue) {
+                i = (i + 1) & mask;
+            }
+            tableSlots[i] = 0;
+        }
+        tagValueCount = 0;
+        tableSize = 0;
+        nodeCount = 0;
+        constructedCount = 0;
+        maxDepth = 0;
+        payloadBytes = 0;
+    }
+
+    private void countTag(int tagValue) {
+        if (isDirect(tagValue)) {
+            int slot = directSlots[tagValue];
+            if (slot != 0) {
+                tagCounts[slot - 1]++;
+            } else {
+                directSlots[tagValue] = addTag(tagValue);
+            }
+            return;
+        }
+        int mask = tableKeys.length - 1;
+        int i = hash(tagValue) & mask;
+        while (tableSlots[i] != 0) {
+            if (tableKeys[i] == tagValue) {
+                tagCounts[tableSlots[i] - 1]++;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        tableKeys[i] = tagValue;
+        tableSlots[i] = addTag(tagValue);
+        if (++tableSize << 1 > tableKeys.length) {
+            rehash(tableKeys.length << 1);
+        }
+    }
+
+    /**
+     * 记录第一次出现的tagValue
+     *
+     * @param tagValue
+     * @return tagValues下标加1
+     */
+    private int addTag(int tagValue) {
+        if (tagValueCount == tagValues.length) {
+            tagValues = Arrays.copyOf(tagValues, tagValueCount << 1);
+            tagCounts = Arrays.copyOf(tagCounts, tagValueCount << 1);
+        }
+        tagValues[tagValueCount] = tagValue;
+        tagCounts[tagValueCount] = 1;
+        return ++tagValueCount;
+    }
+
+    private void rehash(int capacity) {
+        tableKeys = new int[capacity];
+        tableSlots = new int[capacity];
+        int mask = capacity - 1;
+        for (int t = 0; t < tagValueCount; t++) {
+            if (isDirect(tagValues[t])) {
+                continue;
+            }
+            int i = hash(tagValues[t]) & mask;
+            while (tableSlots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            tableKeys[i] = tagValues[t];
+            tableSlots[i] = t + 1;
+        }
+    }
+
+    private static boolean isDirect(int tagValue) {
+        return tagValue >= 0 && tagValue < DIRECT_LOOKUP_LIMIT;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= tagValueCount) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + tagValueCount);
+        }
+    }
+
+    private static int hash(int tagValue) {
+        int h = tagValue * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,94 @@
+package tlv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * 阻塞式的TLV连接，由{@link TLVBlockingServer}为每个连接创建，或者由{@link TLVBlockingServer#connect(java.net.SocketAddress)}主动创建。
+ * 读取和写入都直接阻塞在socket上，配合虚拟线程时每个连接一个线程也能支撑大量连接。
+ * 读取只能在一个线程中进行；写入没有同步，多个线程同时发送时需要调用者自己协调
+ */
+public class TLVSession implements Closeable {
+
+    private final Socket socket;
+
+    private final TLVFrameReader reader;
+
+    private final OutputStream out;
+
+    private volatile Object attachment;
+
+    TLVSession(Socket socket) throws IOException {
+        this.socket = socket;
+        this.reader = new TLVFrameReader(socket.getInputStream());
+        this.out = socket.getOutputStream();
+    }
+
+    /**
+     * 阻塞读取下一个TLV，见{@link TLVFrameReader#read()}
+     *
+     * @return 对方正常关闭连接时返回null
+     * @throws IOException
+     */
+    public TLVDecodeResult read() throws IOException {
+        return reader.read();
+    }
+
+    /**
+     * 阻塞读取下一个TLV的字节数据，见{@link TLVFrameReader#readFrame()}
+     *
+     * @return 对方正常关闭连接时返回null
+     * @throws IOException
+     */
+    public byte[] readFrame() throws IOException {
+        return reader.readFrame();
+    }
+
+    /**
+     * 发送一个TLV对象。socket的输出流没有缓冲，先合并成一个数组再一次写出，避免每个Tag、Length和Value各产生一次系统调用和小包
+     *
+     * @param tlvObject
+     * @throws IOException
+     */
+    public void send(TLVObject tlvObject) throws IOException {
+        out.write(tlvObject.toByteArray());
+    }
+
+    /**
+     * 发送一个或多个完整的TLV
+     *
+     * @param tlvBytes
+     * @throws IOException
+     */
+    public void send(byte[] tlvBytes) throws IOException {
+        out.write(tlvBytes);
+    }
+
+    public void send(byte[] tlvBytes, int offset, int length) throws IOException {
+        out.write(tlvBytes, offset, length);
+    }
+
+    public Socket getSocket() {
+        return socket;
+    }
+
+    /**
+     * 调用者关联到连接上的对象，例如会话状态
+     *
+     * @return
+     */
+    public Object getAttachment() {
+        return attachment;
+    }
+
+    public void setAttachment(Object attachment) {
+        this.attachment = attachment;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,15 @@
+package tlv;
+
+/**
+ * {@link TLVBlockingServer}的连接处理器，每个连接在自己的线程中调用一次，可以直接用阻塞的方式读写
+ */
+public interface TLVSessionHandler {
+
+    /**
+     * 处理一个连接，返回或者抛出异常后连接被关闭
+     *
+     * @param session
+     * @throws Exception
+     */
+    void handle(TLVSession session) throws Exception;
+}
@@ -0,0 +1,192 @@
+package tlv;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * 单生产者单消费者的无锁TLV分帧缓冲区：一个IO线程调用{@link #write(byte[], int, int)}追加数据，
+ * 一个工作线程调用{@link #hasNextTLVData()}和{@link #cutNextTLVData()}截取完整的TLV，两边都不加锁。
+ * <p/>
+ * 内部是容量为2的幂的环形数组，读写下标只增不减。生产者写完数据后以release语义发布写下标（lazySet），
+ * 消费者以acquire语义读取写下标（volatile读）后再读数据；消费者截取完数据后同样发布读下标，生产者据此判断剩余空间。
+ * 单个TLV不能超过容量，环形数组满时{@link #write(byte[], int, int)}只写入能放下的部分，由调用者稍后重试
+ * <p/>
+ * 消费者只用{@link TLVValidator#validateHeader(byte[], int, int)}校验每个TLV的Tag、Length和声明的总字节数，
+ * 格式错误时抛出{@link IllegalStateException}而不是一直等待；Value中的子TLV不校验，
+ * 截取出的TLV来自不可信来源时，解析之前应当再调用{@link TLVValidator#check(byte[], int, int)}
+ */
+public class TLVSpscFrameBuffer {
+
+    private static final AtomicLongFieldUpdater<TLVSpscFrameBuffer> WRITE_INDEX =
+            AtomicLongFieldUpdater.newUpdater(TLVSpscFrameBuffer.class, "writeIndex");
+
+    private static final AtomicLongFieldUpdater<TLVSpscFrameBuffer> READ_INDEX =
+            AtomicLongFieldUpdater.newUpdater(TLVSpscFrameBuffer.class, "readIndex");
+
+    /**
+     * Tag最多占用6个字节，Length最多占用5个字节
+     */
+    private static final int MAX_HEADER_BYTES = TLVValidator.MAX_TAG_BYTES + TLVValidator.MAX_LENGTH_BYTES;
+
+    /**
+     * 不传校验器时只检查Tag和Length的格式，不限制总字节数
+     */
+    private static final TLVValidator HEADER_VALIDATOR = new TLVValidator(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final byte[] buffer;
+
+    private final int mask;
+
+    /**
+     * 已经写入的总字节数，只由生产者修改
+     */
+    private volatile long writeIndex;
+
+    /**
+     * 已经截取的总字节数，只由消费者修改
+     */
+    private volatile long readIndex;
+
+    /**
+     * 生产者缓存的读下标，只有空间看起来不够时才重新读取volatile的readIndex
+     */
+    private long cachedReadIndex;
+
+    /**
+     * 消费者缓存的写下标
+     */
+    private long cachedWriteIndex;
+
+    private int firstTotalSize;
+
+    private final byte[] header = new byte[MAX_HEADER_BYTES];
+
+    private final TLVValidator validator;
+
+    public TLVSpscFrameBuffer(int capacity) {
+        this(capacity, TLVValidator.DEFAULT);
+    }
+
+    /**
+     * @param capacity  环形数组的容量，会向上取整为2的幂，必须不小于最大的单个TLV
+     * @param validator 校验Tag和Length的校验器，为null时只检查格式，不限制总字节数
+     */
+    public TLVSpscFrameBuffer(int capacity, TLVValidator validator) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("the capacity must between 1 and 2^30.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        buffer = new byte[size];
+        mask = size - 1;
+        this.validator = validator != null ? validator : HEADER_VALIDATOR;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * 生产者追加数据，空间不够时只写入能放下的部分
+     *
+     * @param src
+     * @param offset
+     * @param len
+     * @return 实际写入的字节数
+     */
+    public int write(byte[] src, int offset, int len) {
+        long w = writeIndex;
+        int free = buffer.length - (int) (w - cachedReadIndex);
+        if (free < len) {
+            cachedReadIndex = readIndex;
+            free = buffer.length - (int) (w - cachedReadIndex);
+        }
+        int n = Math.min(free, len);
+        if (n <= 0) {
+            return 0;
+        }
+        int start = (int) w & mask;
+        int first = Math.min(n, buffer.length - start);
+        System.arraycopy(src, offset, buffer, start, first);
+        if (first < n) {
+            System.arraycopy(src, offset + first, buffer, 0, n - first);
+        }
+        WRITE_INDEX.lazySet(this, w + n);
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onBuffered((int) (w + n - cachedReadIndex));
+        }
+        return n;
+    }
+
+    /**
+     * 消费者检测是否已经有第一个完整的TLV字节数据
+     *
+     * @return
+     * @throws IllegalStateException 第一个TLV的Tag或Length格式错误、超过了校验器的限制或者超过了容量，永远无法完整
+     */
+    public boolean hasNextTLVData() {
+        long r = readIndex;
+        int available = (int) (cachedWriteIndex - r);
+        if (firstTotalSize == 0 || available < firstTotalSize) {
+            cachedWriteIndex = writeIndex;
+            available = (int) (cachedWriteIndex - r);
+        }
+        if (available == 0) {
+            return false;
+        }
+        if (firstTotalSize == 0) {
+            int n = Math.min(available, MAX_HEADER_BYTES);
+            for (int i = 0; i < n; i++) {
+                header[i] = buffer[(int) (r + i) & mask];
+            }
+            firstTotalSize = validator.validateHeader(header, 0, n);
+            if (firstTotalSize < 0) {
+                int result = firstTotalSize;
+                firstTotalSize = 0;
+                if (TLVMetricsRegistry.ENABLED) {
+                    TLVMetricsRegistry.getMetrics().onMalformed();
+                }
+                throw new IllegalStateException(TLVValidator.getErrorMessage(result));
+            }
+            if (firstTotalSize > buffer.length) {
+                throw new IllegalStateException("the tlv size " + firstTotalSize + " exceeds the capacity " + buffer.length);
+            }
+        }
+        return firstTotalSize > 0 && firstTotalSize <= available;
+    }
+
+    /**
+     * 消费者截取第一个完整的TLV字节数据
+     *
+     * @return 没有完整的TLV数据时返回null
+     */
+    public byte[] cutNextTLVData() {
+        if (!hasNextTLVData()) {
+            return null;
+        }
+        long r = readIndex;
+        byte[] data = new byte[firstTotalSize];
+        int start = (int) r & mask;
+        int first = Math.min(data.length, buffer.length - start);
+        System.arraycopy(buffer, start, data, 0, first);
+        if (first < data.length) {
+            System.arraycopy(buffer, 0, data, first, data.length - first);
+        }
+        firstTotalSize = 0;
+        READ_INDEX.lazySet(this, r + data.length);
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onCopied(data.length);
+        }
+        return data;
+    }
+
+    /**
+     * 未截取的数据字节数，两个线程都可以调用，结果只是一个瞬时值
+     *
+     * @return
+     */
+    public int size() {
+        return (int) (writeIndex - readIndex);
+    }
+}
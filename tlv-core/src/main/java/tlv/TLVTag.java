@@ -0,0 +1,23 @@
+package tlv;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记POJO字段对应的tagValue，由{@link TLVCodec}生成编解码器
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface TLVTag {
+
+    /**
+     * 字段对应的tagValue
+     *
+     * @return
+     */
+    int value();
+}
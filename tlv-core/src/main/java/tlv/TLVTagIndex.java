@@ -0,0 +1,79 @@
+package tlv;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Constructed类型TLV的子TLV索引：按tagValue排序的int数组，二分查找，相同tagValue的子TLV保持原来的先后顺序
+ */
+final class TLVTagIndex {
+
+    /**
+     * 子TLV数量不超过这个值时直接顺序查找，比建索引更快
+     */
+    static final int LINEAR_SCAN_THRESHOLD = 8;
+
+    /**
+     * 排序后的tagValue
+     */
+    private final int[] tags;
+
+    /**
+     * tags[i]对应的子TLV在列表中的下标
+     */
+    private final int[] positions;
+
+    private TLVTagIndex(int[] tags, int[] positions) {
+        this.tags = tags;
+        this.positions = positions;
+    }
+
+    static TLVTagIndex build(List<TLVDecodeResult> children) {
+        int size = children.size();
+        // 高32位放tagValue，低32位放下标，排序后tagValue相同的按下标有序
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) children.get(i).getTagValue() << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] tags = new int[size];
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            tags[i] = (int) (keys[i] >> 32);
+            positions[i] = (int) keys[i];
+        }
+        return new TLVTagIndex(tags, positions);
+    }
+
+    int size() {
+        return tags.length;
+    }
+
+    /**
+     * tagValue第一次出现在排序数组中的下标，不存在时返回-1
+     *
+     * @param tagValue
+     * @return
+     */
+    int first(int tagValue) {
+        int low = 0;
+        int high = tags.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tags[mid] < tagValue) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < tags.length && tags[low] == tagValue ? low : -1;
+    }
+
+    int tagAt(int i) {
+        return tags[i];
+    }
+
+    int positionAt(int i) {
+        return positions[i];
+    }
+}
@@ -0,0 +1,300 @@
+package tlv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.charset.Charset;
+
+/**
+ * TLV编码int和byte[]转换方式
+ * <p/>
+ * Created by lhd on 2015/09/26.
+ */
+public class TLVUtils {
+
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * 字节数组转int,适合转高位在前低位在后的byte[]
+     *
+     * @param bytes
+     * @return
+     */
+    public static long byteArrayToLong(byte[] bytes) {
+        /*long value = 0;
+		int length = bytes.length;
+		//BigInteger转二进制字符串可自动把前面的0去掉
+		value = Long.parseLong(new BigInteger(1, bytes).toString(2), 2);
+		return value;*/
+        return byteArrayToLong(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 字节数组中[offset, offset + len)范围内的字节转long,适合转高位在前低位在后的byte[]，len只能是1、2、4、8
+     *
+     * @param bytes
+     * @param offset
+     * @param len
+     * @return
+     */
+    public static long byteArrayToLong(byte[] bytes, int offset, int len) {
+        long result = 0;
+        if (len == 1) {
+            result = bytes[offset];
+        } else if (len == 2) {
+            result = readShort(bytes, offset);
+        } else if (len == 4) {
+            result = readInt(bytes, offset);
+        } else if (len == 8) {
+            result = readLong(bytes, offset);
+        } else {
+            throw new IllegalArgumentException("the length of byte array is uncorrected.");
+        }
+        return result;
+    }
+
+    /**
+     * 从offset开始读取高位在前低位在后的2个字节
+     *
+     * @param bytes
+     * @param offset
+     * @return
+     */
+    public static short readShort(byte[] bytes, int offset) {
+        return (short) ((bytes[offset] << 8) | (bytes[offset + 1] & 0xff));
+    }
+
+    /**
+     * 从offset开始读取高位在前低位在后的4个字节
+     *
+     * @param bytes
+     * @param offset
+     * @return
+     */
+    public static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] << 24)
+                | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8)
+                | (bytes[offset + 3] & 0xff);
+    }
+
+    /**
+     * 从offset开始读取高位在前低位在后的8个字节
+     *
+     * @param bytes
+     * @param offset
+     * @return
+     */
+    public static long readLong(byte[] bytes, int offset) {
+        return ((long) readInt(bytes, offset) << 32) | (readInt(bytes, offset + 4) & 0xffffffffL);
+    }
+
+    /**
+     * ByteBuffer中[offset, offset + len)范围内的字节转long，规则同{@link #byteArrayToLong(byte[], int, int)}，不改变buffer的position
+     *
+     * @param buffer
+     * @param offset
+     * @param len
+     * @return
+     */
+    public static long byteBufferToLong(ByteBuffer buffer, int offset, int len) {
+        if (len != 1 && len != 2 && len != 4 && len != 8) {
+            throw new IllegalArgumentException("the length of byte array is uncorrected.");
+        }
+        // 由高位到低位，最高字节带符号扩展
+        long result = buffer.get(offset);
+        for (int i = 1; i < len; i++) {
+            result = (result << 8) | (buffer.get(offset + i) & 0xff);
+        }
+        return result;
+    }
+
+    /**
+     * int转byte[]，高位在前低位在后
+     *
+     * @param value
+     * @return
+     */
+    public static byte[] longToByteArray(long value) {
+		/*int length = 4;
+        if (value < Math.pow(2, 8 * 1)) {
+            length = 1;
+        } else if (value < Math.pow(2, 8 * 2)) {
+            length = 2;
+        } else if (value < Math.pow(2, 8 * 4)) {
+            length = 4;
+        } else if (value < Math.pow(2, 8 * 8)) {
+            length = 8;
+        }
+		byte[] result = new byte[length];
+		// 由高位到低位
+		for (int i = 0; i < length; i++) {
+			result[i] = (byte) ((value >> (8 * (length - 1 - i))) & 0xff);
+		}
+		return result;*/
+        Long l = new Long(value);
+        byte[] valueBytes = null;
+        if (l == l.byteValue()) {
+            valueBytes = toBytes(value, 1);
+        } else if (l == l.shortValue()) {
+            valueBytes = toBytes(value, 2);
+        } else if (l == l.intValue()) {
+            valueBytes = toBytes(value, 4);
+        } else if (l == l.longValue()) {
+            valueBytes = toBytes(value, 8);
+        } else {
+            throw new IllegalArgumentException("the value [" + value + "] is too large.");
+        }
+        return valueBytes;
+    }
+
+    /**
+     * 计算long按{@link #longToByteArray(long)}的规则编码后占用的字节数
+     *
+     * @param value
+     * @return 1、2、4或8
+     */
+    public static int computeLongSize(long value) {
+        if (value == (byte) value) {
+            return 1;
+        } else if (value == (short) value) {
+            return 2;
+        } else if (value == (int) value) {
+            return 4;
+        }
+        return 8;
+    }
+
+    /**
+     * 把long按{@link #longToByteArray(long)}的规则直接写入dest的offset位置，不分配内存
+     *
+     * @param dest
+     * @param offset
+     * @param value
+     * @return 写入的字节数
+     */
+    public static int writeLong(byte[] dest, int offset, long value) {
+        int len = computeLongSize(value);
+        for (int i = 0; i < len; i++) {
+            dest[offset + i] = (byte) (value >>> 8 * (len - i - 1));
+        }
+        return len;
+    }
+
+    /**
+     * 计算字符串按UTF-8编码后的字节数，不成对的代理字符按'?'计算，和{@link String#getBytes(Charset)}一致
+     *
+     * @param value
+     * @return
+     */
+    public static int computeUtf8Size(CharSequence value) {
+        int size = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                size++;
+            } else if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                size += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                size++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 把字符串按UTF-8编码直接写入dest的offset位置，不分配内存
+     *
+     * @param dest   目标数组，需要至少有{@link #computeUtf8Size(CharSequence)}个字节的空间
+     * @param offset
+     * @param value
+     * @return 写入的字节数
+     */
+    public static int writeUtf8(byte[] dest, int offset, CharSequence value) {
+        int start = offset;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                dest[offset++] = (byte) c;
+            } else if (c < 0x800) {
+                dest[offset++] = (byte) (0xc0 | (c >> 6));
+                dest[offset++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                dest[offset++] = (byte) (0xf0 | (codePoint >> 18));
+                dest[offset++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                dest[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                dest[offset++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                dest[offset++] = '?';
+            } else {
+                dest[offset++] = (byte) (0xe0 | (c >> 12));
+                dest[offset++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                dest[offset++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return offset - start;
+    }
+
+    /**
+     * 按UTF-8解码字节数组中[offset, offset + len)范围内的字节，全部是ASCII字符时走ISO-8859-1的快速路径，结果和UTF-8解码相同
+     *
+     * @param bytes
+     * @param offset
+     * @param len
+     * @return
+     */
+    public static String readUtf8(byte[] bytes, int offset, int len) {
+        int end = offset + len;
+        for (int i = offset; i < end; i++) {
+            if (bytes[i] < 0) {
+                return new String(bytes, offset, len, UTF_8);
+            }
+        }
+        return new String(bytes, offset, len, ISO_8859_1);
+    }
+
+    /**
+     * 把buffers中剩余的数据全部写入channel，channel一次没有写完时继续写剩下的部分。
+     * channel必须是阻塞模式：非阻塞的channel在发送缓冲区满时写入0个字节，这里会一直空转，
+     * 非阻塞的连接应该像{@link TLVConnection}那样排队，等可写时再写
+     *
+     * @param channel
+     * @param buffers
+     * @return 写入的字节数
+     * @throws IOException
+     * @throws IllegalArgumentException channel是非阻塞模式的{@link SelectableChannel}
+     */
+    public static long writeFully(GatheringByteChannel channel, ByteBuffer[] buffers) throws IOException {
+        if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+            throw new IllegalArgumentException("the channel must be in blocking mode.");
+        }
+        long total = 0;
+        int offset = 0;
+        while (offset < buffers.length) {
+            total += channel.write(buffers, offset, buffers.length - offset);
+            while (offset < buffers.length && !buffers[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+        return total;
+    }
+
+    private static byte[] toBytes(long value, int len) {
+        byte[] valueBytes = new byte[len];
+        for (int i = 0; i < len; i++) {
+            valueBytes[i] = (byte) (value >>> 8 * (len - i - 1));
+        }
+        return valueBytes;
+    }
+}
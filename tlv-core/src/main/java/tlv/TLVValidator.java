@@ -0,0 +1,373 @@
+package tlv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * TLV结构校验器：一次遍历检查Tag和Length的编码、子TLV是否超出父TLV的范围、嵌套深度、最外层TLV的总字节数和每一层子TLV的个数，
+ * 整个过程不分配内存，也不抛出异常，结果用返回值表示。
+ * <p/>
+ * 收到的数据先经过校验再交给{@link TLVDecoder}，格式错误或者声明了巨大Length的数据在分配内存之前就会被拒绝，
+ * {@link TLVByteBuffer}、{@link TLVFrameReader}、{@link TLVFramer}和{@link TLVConnection}默认使用{@link #DEFAULT}。校验器没有状态，可以在多个线程中共享
+ */
+public class TLVValidator {
+
+    /**
+     * 数据还不完整，需要继续读取
+     */
+    public static final int INCOMPLETE = 0;
+
+    /**
+     * Tag超过{@link #MAX_TAG_BYTES}个字节或者tagValue超出int的范围
+     */
+    public static final int INVALID_TAG = -1;
+
+    /**
+     * Length超过{@link #MAX_LENGTH_BYTES}个字节或者超出int的范围
+     */
+    public static final int INVALID_LENGTH = -2;
+
+    /**
+     * 子TLV不完整，超出了父TLV的Value范围
+     */
+    public static final int CHILD_OUT_OF_BOUNDS = -3;
+
+    /**
+     * 最外层TLV的总字节数超过了限制
+     */
+    public static final int FRAME_TOO_LARGE = -4;
+
+    /**
+     * 嵌套深度超过了限制
+     */
+    public static final int TOO_DEEP = -5;
+
+    /**
+     * 同一层的子TLV个数超过了限制
+     */
+    public static final int TOO_MANY_CHILDREN = -6;
+
+    /**
+     * Tag最多占用的字节数，见{@link TLVEncoder#computeTagSize(int)}
+     */
+    public static final int MAX_TAG_BYTES = 6;
+
+    /**
+     * Length最多占用的字节数，见{@link TLVEncoder#computeLengthSize(int)}
+     */
+    public static final int MAX_LENGTH_BYTES = 5;
+
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    public static final int DEFAULT_MAX_DEPTH = 64;
+
+    public static final int DEFAULT_MAX_CHILD_COUNT = 65536;
+
+    public static final TLVValidator DEFAULT = new TLVValidator(DEFAULT_MAX_FRAME_SIZE, DEFAULT_MAX_DEPTH, DEFAULT_MAX_CHILD_COUNT);
+
+    private final int maxFrameSize;
+
+    private final int maxDepth;
+
+    private final int maxChildCount;
+
+    /**
+     * @param maxFrameSize  最外层TLV允许的最大总字节数
+     * @param maxDepth      允许的最大嵌套深度，最外层TLV的深度为1
+     * @param maxChildCount 每个Constructed类型TLV允许的最多子TLV个数
+     */
+    public TLVValidator(int maxFrameSize, int maxDepth, int maxChildCount) {
+        if (maxFrameSize <= 0) {
+            throw new IllegalArgumentException("the max frame size must be greater than 0.");
+        }
+        if (maxDepth <= 0) {
+            throw new IllegalArgumentException("the max depth must be greater than 0.");
+        }
+        if (maxChildCount <= 0) {
+            throw new IllegalArgumentException("the max child count must be greater than 0.");
+        }
+        this.maxFrameSize = maxFrameSize;
+        this.maxDepth = maxDepth;
+        this.maxChildCount = maxChildCount;
+    }
+
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxChildCount() {
+        return maxChildCount;
+    }
+
+    /**
+     * 只检查从offset开始的最外层TLV的Tag和Length，以及声明的总字节数是否超过限制，不要求Value已经完整，
+     * 用来在读取Value之前尽早拒绝错误的数据
+     *
+     * @param bytes
+     * @param offset TLV起始下标
+     * @param limit  可用数据的结束下标（不包含）
+     * @return 大于0时是这个TLV声明的总字节数；Tag或Length不完整时返回{@link #INCOMPLETE}；格式错误时返回对应的负数错误码
+     */
+    public int validateHeader(byte[] bytes, int offset, int limit) {
+        int tagBytesSize = tagBytesSize(bytes, offset, limit);
+        if (tagBytesSize <= 0) {
+            return tagBytesSize;
+        }
+        int lengthBytesSize = lengthBytesSize(bytes, offset + tagBytesSize, limit);
+        if (lengthBytesSize <= 0) {
+            return lengthBytesSize;
+        }
+        int headerSize = tagBytesSize + lengthBytesSize;
+        int valueBytesSize = TLVDecoder.decodeLength(bytes, offset + tagBytesSize, lengthBytesSize);
+        if (valueBytesSize > maxFrameSize - headerSize) {
+            return FRAME_TOO_LARGE;
+        }
+        return headerSize + valueBytesSize;
+    }
+
+    /**
+     * 完整校验从offset开始的第一个最外层TLV，Value不完整时只检查Tag和Length
+     *
+     * @param bytes
+     * @param offset TLV起始下标
+     * @param limit  可用数据的结束下标（不包含），之后的数据不属于这个TLV时不会被检查
+     * @return 大于0时是这个TLV的总字节数；数据不完整时返回{@link #INCOMPLETE}；格式错误时返回对应的负数错误码
+     */
+    public int validate(byte[] bytes, int offset, int limit) {
+        int totalBytesSize = validateHeader(bytes, offset, limit);
+        if (totalBytesSize <= 0) {
+            return totalBytesSize;
+        }
+        if (totalBytesSize > limit - offset) {
+            return INCOMPLETE;
+        }
+        if (TLVDecoder.decodeDataType(bytes, offset) == TLVEncoder.CONSTRUCTED_DATA) {
+            int tagBytesSize = TLVDecoder.getTagBytesSize(bytes, offset, limit);
+            int valueOffset = offset + tagBytesSize + TLVDecoder.getLengthBytesSize(bytes, offset + tagBytesSize, limit);
+            int result = validateChildren(bytes, valueOffset, offset + totalBytesSize, 2);
+            if (result < 0) {
+                return result;
+            }
+        }
+        return totalBytesSize;
+    }
+
+    /**
+     * 规则同{@link #validateHeader(byte[], int, int)}，不改变buffer的position
+     */
+    public int validateHeader(ByteBuffer buffer, int offset, int limit) {
+        int tagBytesSize = tagBytesSize(buffer, offset, limit);
+        if (tagBytesSize <= 0) {
+            return tagBytesSize;
+        }
+        int lengthBytesSize = lengthBytesSize(buffer, offset + tagBytesSize, limit);
+        if (lengthBytesSize <= 0) {
+            return lengthBytesSize;
+        }
+        int headerSize = tagBytesSize + lengthBytesSize;
+        int valueBytesSize = TLVDecoder.decodeLength(buffer, offset + tagBytesSize, lengthBytesSize);
+        if (valueBytesSize > maxFrameSize - headerSize) {
+            return FRAME_TOO_LARGE;
+        }
+        return headerSize + valueBytesSize;
+    }
+
+    /**
+     * 规则同{@link #validate(byte[], int, int)}，不改变buffer的position
+     */
+    public int validate(ByteBuffer buffer, int offset, int limit) {
+        int totalBytesSize = validateHeader(buffer, offset, limit);
+        if (totalBytesSize <= 0) {
+            return totalBytesSize;
+        }
+        if (totalBytesSize > limit - offset) {
+            return INCOMPLETE;
+        }
+        if (TLVDecoder.decodeDataType(buffer, offset) == TLVEncoder.CONSTRUCTED_DATA) {
+            int tagBytesSize = TLVDecoder.getTagBytesSize(buffer, offset, limit);
+            int valueOffset = offset + tagBytesSize + TLVDecoder.getLengthBytesSize(buffer, offset + tagBytesSize, limit);
+            int result = validateChildren(buffer, valueOffset, offset + totalBytesSize, 2);
+            if (result < 0) {
+                return result;
+            }
+        }
+        return totalBytesSize;
+    }
+
+    /**
+     * 校验一个完整的TLV，[offset, offset + length)必须恰好是一个TLV
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     * @throws IOException 数据不完整、有多余的字节或者格式错误
+     */
+    public void check(byte[] bytes, int offset, int length) throws IOException {
+        int result = validate(bytes, offset, offset + length);
+        if (result < 0) {
+            throw new IOException(getErrorMessage(result));
+        }
+        if (result == INCOMPLETE) {
+            throw new IOException("tlv data is incomplete");
+        }
+        if (result != length) {
+            throw new IOException("tlv data has " + (length - result) + " unexpected bytes at the end");
+        }
+    }
+
+    /**
+     * 错误码对应的描述
+     *
+     * @param result {@link #validate(byte[], int, int)}等返回的错误码
+     * @return
+     */
+    public static String getErrorMessage(int result) {
+        switch (result) {
+            case INCOMPLETE:
+                return "tlv data is incomplete";
+            case INVALID_TAG:
+                return "tlv tag is invalid";
+            case INVALID_LENGTH:
+                return "tlv length is invalid";
+            case CHILD_OUT_OF_BOUNDS:
+                return "tlv child is out of the bounds of its parent";
+            case FRAME_TOO_LARGE:
+                return "tlv frame is too large";
+            case TOO_DEEP:
+                return "tlv is nested too deep";
+            case TOO_MANY_CHILDREN:
+                return "tlv has too many children";
+            default:
+                return result > 0 ? "tlv data is valid" : "unknown error: " + result;
+        }
+    }
+
+    /**
+     * 校验[offset, limit)范围内首尾相连的子TLV，递归深度不超过maxDepth，不分配内存
+     *
+     * @param depth 这些子TLV的深度
+     * @return 0表示正确，否则返回负数错误码
+     */
+    private int validateChildren(byte[] bytes, int offset, int limit, int depth) {
+        if (offset < limit && depth > maxDepth) {
+            return TOO_DEEP;
+        }
+        int childCount = 0;
+        while (offset < limit) {
+            if (++childCount > maxChildCount) {
+                return TOO_MANY_CHILDREN;
+            }
+            int tagBytesSize = tagBytesSize(bytes, offset, limit);
+            if (tagBytesSize <= 0) {
+                return tagBytesSize == INCOMPLETE ? CHILD_OUT_OF_BOUNDS : tagBytesSize;
+            }
+            int lengthOffset = offset + tagBytesSize;
+            int lengthBytesSize = lengthBytesSize(bytes, lengthOffset, limit);
+            if (lengthBytesSize <= 0) {
+                return lengthBytesSize == INCOMPLETE ? CHILD_OUT_OF_BOUNDS : lengthBytesSize;
+            }
+            int valueOffset = lengthOffset + lengthBytesSize;
+            int valueBytesSize = TLVDecoder.decodeLength(bytes, lengthOffset, lengthBytesSize);
+            if (valueBytesSize > limit - valueOffset) {
+                return CHILD_OUT_OF_BOUNDS;
+            }
+            if (TLVDecoder.decodeDataType(bytes, offset) == TLVEncoder.CONSTRUCTED_DATA) {
+                int result = validateChildren(bytes, valueOffset, valueOffset + valueBytesSize, depth + 1);
+                if (result < 0) {
+                    return result;
+                }
+            }
+            offset = valueOffset + valueBytesSize;
+        }
+        return 0;
+    }
+
+    private int validateChildren(ByteBuffer buffer, int offset, int limit, int depth) {
+        if (offset < limit && depth > maxDepth) {
+            return TOO_DEEP;
+        }
+        int childCount = 0;
+        while (offset < limit) {
+            if (++childCount > maxChildCount) {
+                return TOO_MANY_CHILDREN;
+            }
+            int tagBytesSize = tagBytesSize(buffer, offset, limit);
+            if (tagBytesSize <= 0) {
+                return tagBytesSize == INCOMPLETE ? CHILD_OUT_OF_BOUNDS : tagBytesSize;
+            }
+            int lengthOffset = offset + tagBytesSize;
+            int lengthBytesSize = lengthBytesSize(buffer, lengthOffset, limit);
+            if (lengthBytesSize <= 0) {
+                return lengthBytesSize == INCOMPLETE ? CHILD_OUT_OF_BOUNDS : lengthBytesSize;
+            }
+            int valueOffset = lengthOffset + lengthBytesSize;
+            int valueBytesSize = TLVDecoder.decodeLength(buffer, lengthOffset, lengthBytesSize);
+            if (valueBytesSize > limit - valueOffset) {
+                return CHILD_OUT_OF_BOUNDS;
+            }
+            if (TLVDecoder.decodeDataType(buffer, offset) == TLVEncoder.CONSTRUCTED_DATA) {
+                int result = validateChildren(buffer, valueOffset, valueOffset + valueBytesSize, depth + 1);
+                if (result < 0) {
+                    return result;
+                }
+            }
+            offset = valueOffset + valueBytesSize;
+        }
+        return 0;
+    }
+
+    /**
+     * Tag占用的字节数，规则同{@link TLVDecoder#getTagBytesSize(byte[], int, int)}，同时检查长度和取值范围
+     */
+    static int tagBytesSize(byte[] bytes, int offset, int limit) {
+        int size = TLVDecoder.getTagBytesSize(bytes, offset, Math.min(limit, offset + MAX_TAG_BYTES));
+        if (size == 0) {
+            return limit - offset >= MAX_TAG_BYTES ? INVALID_TAG : INCOMPLETE;
+        }
+        // 最后一个字节左移28位，只剩3位可用
+        if (size == MAX_TAG_BYTES && (bytes[offset + size - 1] & 0x7f) > 0x07) {
+            return INVALID_TAG;
+        }
+        return size;
+    }
+
+    /**
+     * Length占用的字节数，规则同{@link TLVDecoder#getLengthBytesSize(byte[], int, int)}，同时检查长度和取值范围
+     */
+    static int lengthBytesSize(byte[] bytes, int offset, int limit) {
+        int size = TLVDecoder.getLengthBytesSize(bytes, offset, Math.min(limit, offset + MAX_LENGTH_BYTES));
+        if (size == 0) {
+            return limit - offset >= MAX_LENGTH_BYTES ? INVALID_LENGTH : INCOMPLETE;
+        }
+        if (size == MAX_LENGTH_BYTES && (bytes[offset + size - 1] & 0x7f) > 0x07) {
+            return INVALID_LENGTH;
+        }
+        return size;
+    }
+
+    static int tagBytesSize(ByteBuffer buffer, int offset, int limit) {
+        int size = TLVDecoder.getTagBytesSize(buffer, offset, Math.min(limit, offset + MAX_TAG_BYTES));
+        if (size == 0) {
+            return limit - offset >= MAX_TAG_BYTES ? INVALID_TAG : INCOMPLETE;
+        }
+        if (size == MAX_TAG_BYTES && (buffer.get(offset + size - 1) & 0x7f) > 0x07) {
+            return INVALID_TAG;
+        }
+        return size;
+    }
+
+    static int lengthBytesSize(ByteBuffer buffer, int offset, int limit) {
+        int size = TLVDecoder.getLengthBytesSize(buffer, offset, Math.min(limit, offset + MAX_LENGTH_BYTES));
+        if (size == 0) {
+            return limit - offset >= MAX_LENGTH_BYTES ? INVALID_LENGTH : INCOMPLETE;
+        }
+        if (size == MAX_LENGTH_BYTES && (buffer.get(offset + size - 1) & 0x7f) > 0x07) {
+            return INVALID_LENGTH;
+        }
+        return size;
+    }
+}
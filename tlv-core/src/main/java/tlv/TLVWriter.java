@@ -0,0 +1,260 @@
+package tlv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 可复用的TLV流式编码器，直接把TLV写入内部的字节数组，{@link #reset()}之后保留数组的容量继续使用，
+ * 稳定状态下编码byte[]、long、UTF-8字符串以及嵌套结构都不会分配内存：
+ * <pre>
+ * TLVWriter writer = TLVWriter.get();
+ * writer.beginConstructed(MSG_TAG)
+ *       .put(1, uid)
+ *       .putUtf8(2, text)
+ *       .endConstructed();
+ * writer.writeTo(out);
+ * </pre>
+ * 嵌套结构在{@link #beginConstructed(int)}时先预留1个字节的Length，{@link #endConstructed()}时回填，
+ * 只有Value超过127个字节需要更长的Length时才把Value后移。和{@link TLVObject}一样，空的嵌套结构不编码。
+ * 此类不是线程安全的
+ */
+public class TLVWriter {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * {@link #reset()}时保留的最大容量，偶尔编码的超大消息不会一直占用线程的内存
+     */
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+
+    private static final ThreadLocal<TLVWriter> THREAD_WRITER = new ThreadLocal<TLVWriter>() {
+        @Override
+        protected TLVWriter initialValue() {
+            return new TLVWriter();
+        }
+    };
+
+    private final int initialCapacity;
+
+    private byte[] buf;
+
+    private int count;
+
+    /**
+     * 尚未结束的嵌套结构的Tag起始下标
+     */
+    private int[] headerStack = new int[8];
+
+    /**
+     * 尚未结束的嵌套结构的Value起始下标
+     */
+    private int[] valueStack = new int[8];
+
+    private int depth;
+
+    public TLVWriter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public TLVWriter(int initialCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("the initial capacity must be greater than 0.");
+        }
+        this.initialCapacity = initialCapacity;
+        this.buf = new byte[initialCapacity];
+    }
+
+    /**
+     * 获取当前线程复用的TLVWriter，返回前已经{@link #reset()}。
+     * 同一个线程中不能同时使用两次get()得到的对象，它们是同一个
+     *
+     * @return
+     */
+    public static TLVWriter get() {
+        TLVWriter writer = THREAD_WRITER.get();
+        writer.reset();
+        return writer;
+    }
+
+    /**
+     * 清空已经写入的内容，保留数组容量，超过{@link #MAX_RETAINED_CAPACITY}时换回初始大小的数组
+     */
+    public void reset() {
+        count = 0;
+        depth = 0;
+        if (buf.length > MAX_RETAINED_CAPACITY) {
+            buf = new byte[initialCapacity];
+        }
+    }
+
+    public TLVWriter put(int tagValue, long value) {
+        int valueSize = TLVUtils.computeLongSize(value);
+        writeHeader(TLVEncoder.PRIMITIVE_DATA, tagValue, valueSize);
+        count += TLVUtils.writeLong(buf, count, value);
+        return this;
+    }
+
+    /**
+     * 按平台默认编码写入字符串，和{@link TLVObject#put(int, String)}一致，需要把字符串转换成byte[]，
+     * 不希望分配内存时使用{@link #putUtf8(int, CharSequence)}
+     *
+     * @param tagValue
+     * @param value
+     * @return
+     */
+    public TLVWriter put(int tagValue, String value) {
+        return put(tagValue, value == null ? null : value.getBytes());
+    }
+
+    /**
+     * 按UTF-8直接把字符串写入内部数组，不分配内存
+     *
+     * @param tagValue
+     * @param value
+     * @return
+     */
+    public TLVWriter putUtf8(int tagValue, CharSequence value) {
+        int valueSize = value == null ? 0 : TLVUtils.computeUtf8Size(value);
+        writeHeader(TLVEncoder.PRIMITIVE_DATA, tagValue, valueSize);
+        if (value != null) {
+            count += TLVUtils.writeUtf8(buf, count, value);
+        }
+        return this;
+    }
+
+    public TLVWriter put(int tagValue, byte[] value) {
+        return value == null ? put(tagValue, null, 0, 0) : put(tagValue, value, 0, value.length);
+    }
+
+    public TLVWriter put(int tagValue, byte[] value, int offset, int length) {
+        writeHeader(TLVEncoder.PRIMITIVE_DATA, tagValue, length);
+        if (length > 0) {
+            System.arraycopy(value, offset, buf, count, length);
+            count += length;
+        }
+        return this;
+    }
+
+    /**
+     * 把整个TLVObject作为嵌套结构写入
+     *
+     * @param tagValue
+     * @param tlvObject
+     * @return
+     */
+    public TLVWriter put(int tagValue, TLVObject tlvObject) {
+        if (tlvObject != null) {
+            int valueSize = tlvObject.computeSize();
+            if (valueSize > 0) {
+                writeHeader(TLVEncoder.CONSTRUCTED_DATA, tagValue, valueSize);
+                count = tlvObject.writeTo(buf, count);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 开始一个嵌套结构，之后写入的TLV都是它的子TLV，直到对应的{@link #endConstructed()}
+     *
+     * @param tagValue
+     * @return
+     */
+    public TLVWriter beginConstructed(int tagValue) {
+        if (depth == headerStack.length) {
+            headerStack = Arrays.copyOf(headerStack, depth << 1);
+            valueStack = Arrays.copyOf(valueStack, depth << 1);
+        }
+        headerStack[depth] = count;
+        writeHeader(TLVEncoder.CONSTRUCTED_DATA, tagValue, 0);
+        valueStack[depth] = count;
+        depth++;
+        return this;
+    }
+
+    /**
+     * 结束最近一个嵌套结构，回填它的Length
+     *
+     * @return
+     */
+    public TLVWriter endConstructed() {
+        if (depth == 0) {
+            throw new IllegalStateException("endConstructed() without beginConstructed().");
+        }
+        depth--;
+        int valueStart = valueStack[depth];
+        int valueSize = count - valueStart;
+        if (valueSize == 0) {
+            // 空的嵌套结构不编码
+            count = headerStack[depth];
+            return this;
+        }
+        int extra = TLVEncoder.computeLengthSize(valueSize) - 1;
+        if (extra > 0) {
+            ensureCapacity(extra);
+            System.arraycopy(buf, valueStart, buf, valueStart + extra, valueSize);
+            count += extra;
+        }
+        TLVEncoder.writeLength(buf, valueStart - 1, valueSize);
+        return this;
+    }
+
+    /**
+     * 已经写入的字节数
+     *
+     * @return
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 内部数组，有效内容为[0, {@link #size()})，在下一次写入或{@link #reset()}之后可能失效
+     *
+     * @return
+     */
+    public byte[] getBuffer() {
+        return buf;
+    }
+
+    public byte[] toByteArray() {
+        checkFinished();
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onEncoded(count);
+        }
+        return Arrays.copyOf(buf, count);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        checkFinished();
+        if (TLVMetricsRegistry.ENABLED) {
+            TLVMetricsRegistry.getMetrics().onEncoded(count);
+        }
+        out.write(buf, 0, count);
+    }
+
+    private void checkFinished() {
+        if (depth != 0) {
+            throw new IllegalStateException(depth + " constructed tlv not ended.");
+        }
+    }
+
+    private void writeHeader(int dataType, int tagValue, int valueSize) {
+        ensureCapacity(TLVEncoder.computeTagSize(tagValue) + TLVEncoder.computeLengthSize(valueSize) + valueSize);
+        count += TLVEncoder.writeTag(buf, count, TLVEncoder.PRIMITIVE_FRAME, dataType, tagValue);
+        count += TLVEncoder.writeLength(buf, count, valueSize);
+    }
+
+    /**
+     * 保证还能写入n个字节，容量按2的幂增长
+     *
+     * @param n
+     */
+    private void ensureCapacity(int n) {
+        int required = count + n;
+        if (required > buf.length) {
+            int newCapacity = Integer.highestOneBit(required - 1) << 1;
+            buf = Arrays.copyOf(buf, newCapacity > 0 ? newCapacity : Integer.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package tlv;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TLVCodecMetricsTest {
+
+    @Test
+    public void counters() {
+        TLVCodecMetrics metrics = new TLVCodecMetrics();
+        metrics.onEncoded(10);
+        metrics.onEncoded(20);
+        metrics.onDecoded(30, 100);
+        metrics.onMalformed();
+        assertEquals(2, metrics.getFramesEncoded());
+        assertEquals(30, metrics.getBytesEncoded());
+        assertEquals(1, metrics.getFramesDecoded());
+        assertEquals(30, metrics.getBytesDecoded());
+        assertEquals(1, metrics.getMalformedFrames());
+        assertEquals(1, metrics.getDecodeLatency().getCount());
+        assertEquals(127, metrics.getDecodeLatencyP99());
+    }
+
+    @Test
+    public void bufferHighWaterMark() {
+        TLVCodecMetrics metrics = new TLVCodecMetrics();
+        metrics.onBuffered(100);
+        metrics.onBuffered(50);
+        metrics.onBuffered(300);
+        metrics.onBuffered(0);
+        assertEquals(300, metrics.getBufferHighWaterMark());
+    }
+
+    @Test
+    public void compactionAndGrowthAreCountedSeparately() {
+        TLVCodecMetrics metrics = new TLVCodecMetrics();
+        metrics.onCompacted(10);
+        metrics.onCompacted(20);
+        metrics.onGrown(5);
+        metrics.onCopied(7);
+        assertEquals(2, metrics.getCompactions());
+        assertEquals(1, metrics.getGrowths());
+        // 移动、扩容和截取复制的字节数都计入bytesCopied
+        assertEquals(42, metrics.getBytesCopied());
+    }
+
+    @Test
+    public void reset() {
+        TLVCodecMetrics metrics = new TLVCodecMetrics();
+        metrics.onEncoded(10);
+        metrics.onDecoded(10, 10);
+        metrics.onMalformed();
+        metrics.onBuffered(10);
+        metrics.onCompacted(10);
+        metrics.onGrown(10);
+        metrics.onCopied(10);
+        metrics.reset();
+        assertEquals(0, metrics.getFramesEncoded());
+        assertEquals(0, metrics.getBytesEncoded());
+        assertEquals(0, metrics.getFramesDecoded());
+        assertEquals(0, metrics.getBytesDecoded());
+        assertEquals(0, metrics.getMalformedFrames());
+        assertEquals(0, metrics.getBufferHighWaterMark());
+        assertEquals(0, metrics.getCompactions());
+        assertEquals(0, metrics.getGrowths());
+        assertEquals(0, metrics.getBytesCopied());
+        assertEquals(0, metrics.getDecodeLatency().getCount());
+    }
+}
@@ -0,0 +1,87 @@
+package tlv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TLVCodecTest {
+
+    public static class Address {
+        @TLVTag(1)
+        String city;
+        @TLVTag(2)
+        int zip;
+    }
+
+    public static class User {
+        @TLVTag(1)
+        long uid;
+        @TLVTag(2)
+        String name;
+        @TLVTag(3)
+        boolean vip;
+        @TLVTag(4)
+        Integer level;
+        @TLVTag(5)
+        byte[] avatar;
+        @TLVTag(6)
+        Address address;
+        @TLVTag(2000)
+        short flags;
+    }
+
+    private static User user() {
+        User user = new User();
+        user.uid = 10086L;
+        user.name = "张三";
+        user.vip = true;
+        user.level = 7;
+        user.avatar = new byte[]{1, 2, 3};
+        user.address = new Address();
+        user.address.city = "Shenzhen";
+        user.address.zip = 518000;
+        user.flags = -2;
+        return user;
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        TLVCodec<User> codec = TLVCodec.of(User.class);
+        User decoded = codec.decode(codec.encode(user()));
+        assertEquals(10086L, decoded.uid);
+        assertEquals("张三", decoded.name);
+        assertTrue(decoded.vip);
+        assertEquals(Integer.valueOf(7), decoded.level);
+        assertArrayEquals(new byte[]{1, 2, 3}, decoded.avatar);
+        assertEquals("Shenzhen", decoded.address.city);
+        assertEquals(518000, decoded.address.zip);
+        assertEquals(-2, decoded.flags);
+
+        byte[] constructed = codec.encode(100, user());
+        User fromConstructed = codec.decodeConstructed(constructed, 0, constructed.length);
+        assertEquals("张三", fromConstructed.name);
+    }
+
+    @Test
+    public void nullFieldsAreSkipped() throws Exception {
+        TLVCodec<User> codec = TLVCodec.of(User.class);
+        User decoded = codec.decode(codec.encode(new User()));
+        assertNull(decoded.name);
+        assertNull(decoded.level);
+        assertNull(decoded.address);
+    }
+
+    @Test
+    public void sameBytesAsTLVObject() throws Exception {
+        Address address = new Address();
+        address.city = "Shenzhen";
+        address.zip = 518000;
+        TLVObject object = new TLVObject();
+        object.put(1, "Shenzhen");
+        object.put(2, 518000L);
+        assertArrayEquals(object.toByteArray(), TLVCodec.of(Address.class).encode(address));
+    }
+}
@@ -0,0 +1,133 @@
+package tlv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+public class TLVCompressorTest {
+
+    private static byte[] message() throws IOException {
+        TLVObject child = new TLVObject();
+        for (int i = 0; i < 100; i++) {
+            child.put(i, "message " + (i % 10));
+        }
+        TLVObject root = new TLVObject();
+        root.put(1, child);
+        return root.toByteArray();
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        TLVCompressor compressor = new TLVCompressor();
+        byte[] bytes = message();
+        byte[] compressed = compressor.compress(bytes);
+        assertTrue(compressed.length < bytes.length);
+        assertTrue(TLVCompressor.isCompressed(compressed, 0, compressed.length));
+        assertArrayEquals(bytes, compressor.decompress(compressed));
+        assertEquals("message 5", compressor.decode(compressed).getResultByTagValue(15).getStringValue());
+        // 没有压缩的TLV原样返回
+        assertSame(bytes, compressor.decompress(bytes));
+    }
+
+    @Test
+    public void smallFrameIsNotCompressed() throws Exception {
+        TLVObject object = new TLVObject();
+        object.put(1, 1L);
+        byte[] bytes = object.toByteArray();
+        assertSame(bytes, new TLVCompressor().compress(bytes));
+    }
+
+    @Test
+    public void corrupted() throws Exception {
+        TLVCompressor compressor = new TLVCompressor();
+        byte[] compressed = compressor.compress(message());
+        try {
+            compressor.decompress(Arrays.copyOf(compressed, compressed.length - 1));
+            fail();
+        } catch (IOException e) {
+            // 期望的异常
+        }
+    }
+
+    @Test
+    public void declaredSizeOverLimit() throws Exception {
+        byte[] bytes = message();
+        byte[] compressed = new TLVCompressor(0, Deflater.BEST_SPEED, 1024 * 1024).compress(bytes);
+        try {
+            new TLVCompressor(0, Deflater.BEST_SPEED, bytes.length - 1).decompress(compressed);
+            fail();
+        } catch (IOException e) {
+            // 期望的异常
+        }
+    }
+
+    @Test
+    public void declaredSizeLargerThanData() throws Exception {
+        byte[] bytes = message();
+        byte[] compressed = new TLVCompressor().compress(bytes);
+        // 把原始字节数改大，解压出的数据不够时报错
+        int tagBytesSize = TLVDecoder.getTagBytesSize(compressed, 0, compressed.length);
+        int position = tagBytesSize + TLVDecoder.getLengthBytesSize(compressed, tagBytesSize, compressed.length);
+        int sizeBytes = TLVDecoder.getLengthBytesSize(compressed, position, compressed.length);
+        byte[] forged = compressed.clone();
+        for (int i = 0; i < sizeBytes - 1; i++) {
+            forged[position + i] = (byte) 0xff;
+        }
+        forged[position + sizeBytes - 1] = 0x7f;
+        try {
+            new TLVCompressor().decompress(forged);
+            fail();
+        } catch (IOException e) {
+            // 期望的异常
+        }
+    }
+
+    @Test
+    public void frameReaderDecompresses() throws Exception {
+        TLVCompressor compressor = new TLVCompressor();
+        byte[] bytes = message();
+        TLVObject small = new TLVObject();
+        small.put(2, 2L);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(compressor.compress(bytes));
+        out.write(small.toByteArray());
+        out.write(compressor.compress(bytes));
+        TLVFrameReader reader = new TLVFrameReader(new ByteArrayInputStream(out.toByteArray()), 16,
+                TLVValidator.DEFAULT, compressor);
+        assertEquals("message 5", reader.read().getResultByTagValue(15).getStringValue());
+        assertEquals(2L, reader.read().getLongValue());
+        assertEquals(1, reader.read().getTagValue());
+        assertNull(reader.read());
+
+        // 不传压缩器时原样交出包装后的TLV
+        TLVDecodeResult wrapped = new TLVFrameReader(new ByteArrayInputStream(compressor.compress(bytes))).read();
+        assertEquals(TLVCompressor.COMPRESSED_TAG, wrapped.getTagValue());
+    }
+
+    @Test
+    public void decompressedFrameIsValidated() throws Exception {
+        TLVCompressor compressor = new TLVCompressor();
+        byte[] bytes = message();
+        byte[] compressed = compressor.compress(bytes);
+        // 包装后的TLV没有超过限制，解压出的TLV超过了
+        TLVValidator validator = new TLVValidator(compressed.length, 64, 1024);
+        TLVFrameReader reader = new TLVFrameReader(new ByteArrayInputStream(compressed), 16, validator, compressor);
+        try {
+            reader.read();
+            fail();
+        } catch (IOException e) {
+            assertEquals(TLVValidator.getErrorMessage(TLVValidator.FRAME_TOO_LARGE), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package tlv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TLVDecoderTest {
+
+    private static byte[] message() throws IOException {
+        TLVObject child = new TLVObject();
+        child.put(1, 42L);
+        child.put(2, "hello");
+        TLVObject root = new TLVObject();
+        root.put(100, child);
+        return root.toByteArray();
+    }
+
+    @Test
+    public void decodeByteArrayAndBuffers() throws Exception {
+        byte[] bytes = message();
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        TLVDecodeResult[] results = {
+                TLVDecoder.decode(bytes, 0, bytes.length),
+                TLVDecoder.decodeLazy(bytes, 0, bytes.length),
+                TLVDecoder.decode(ByteBuffer.wrap(bytes)),
+                TLVDecoder.decode(direct),
+                TLVDecoder.decodeLazy(direct)
+        };
+        for (TLVDecodeResult result : results) {
+            assertEquals(100, result.getTagValue());
+            assertEquals(42L, result.getResultByTagValue(1).getLongValue());
+            assertEquals("hello", result.getResultByTagValue(2).getUtf8StringValue());
+        }
+        assertEquals(0, direct.position());
+    }
+
+    @Test
+    public void writerAndEncoderMatchObject() throws Exception {
+        TLVWriter writer = new TLVWriter();
+        writer.beginConstructed(100).put(1, 42L).put(2, "hello").endConstructed();
+        assertArrayEquals(message(), writer.toByteArray());
+
+        byte[] value = {5, 6, 7};
+        TLVEncodeResult encoded = TLVEncoder.encode(TLVEncoder.PRIVATE_FRAME, TLVEncoder.PRIMITIVE_DATA, 300, value);
+        byte[] bytes = encoded.toByteArray();
+        TLVDecodeResult result = TLVDecoder.decode(bytes, 0, bytes.length);
+        assertEquals(TLVEncoder.PRIVATE_FRAME, result.getFrameType());
+        assertEquals(300, result.getTagValue());
+        assertArrayEquals(value, (byte[]) result.getValue());
+    }
+
+    @Test
+    public void select() throws Exception {
+        byte[] bytes = message();
+        int[] found = TLVDecoder.select(bytes, new int[]{100, 2}, new int[]{100, 9});
+        assertEquals("hello", new String(bytes, found[0], found[1], "UTF-8"));
+        assertEquals(-1, found[2]);
+    }
+
+    @Test
+    public void getTLVSize() throws Exception {
+        assertEquals(3, TLVDecoder.getTLVSize(message()));
+        byte[] truncated = message();
+        try {
+            TLVDecoder.getTLVSize(Arrays.copyOf(truncated, truncated.length - 1));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // 期望的异常
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedValue() throws Exception {
+        byte[] bytes = message();
+        TLVDecoder.decode(bytes, 0, bytes.length - 1);
+    }
+
+    @Test(expected = IOException.class)
+    public void lengthOutOfIntRange() throws Exception {
+        // Length为5个字节，最后一个字节超出int的范围
+        byte[] bytes = {0x01, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f, 0x00};
+        TLVDecoder.decode(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void totalBytesSizeWithLengthOutOfIntRange() {
+        byte[] bytes = {0x01, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f, 0x00};
+        assertEquals(-1, TLVDecoder.getTotalBytesSize(bytes, 0, bytes.length));
+        assertEquals(-1, TLVDecoder.getTotalBytesSize(ByteBuffer.wrap(bytes), 0, bytes.length));
+        // 总字节数超出int的范围
+        byte[] max = {0x01, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07};
+        assertEquals(-1, TLVDecoder.getTotalBytesSize(max, 0, max.length));
+    }
+
+    @Test
+    public void lengthBitsBeyondInt() throws Exception {
+        // 第5个字节大于0x07，或者Length有6个字节：多出的位会被移出int，不能解析成一个小的长度
+        byte[] fifth = {0x01, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10, 0x55};
+        byte[] sixth = {0x01, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01, 0x55};
+        for (byte[] bytes : new byte[][]{fifth, sixth}) {
+            assertEquals(-1, TLVDecoder.getTotalBytesSize(bytes, 0, bytes.length));
+            assertEquals(-1, TLVDecoder.getTotalBytesSize(ByteBuffer.wrap(bytes), 0, bytes.length));
+            assertEquals(TLVValidator.INVALID_LENGTH, TLVValidator.DEFAULT.validate(bytes, 0, bytes.length));
+            try {
+                TLVDecoder.decode(bytes, 0, bytes.length);
+                fail();
+            } catch (IOException e) {
+                assertEquals("tlv length is invalid", e.getMessage());
+            }
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).flip();
+            try {
+                TLVDecoder.decode(direct);
+                fail();
+            } catch (IOException e) {
+                assertEquals("tlv length is invalid", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void childOutOfBoundsIsLeftToValidator() throws Exception {
+        // Constructed类型的Value中，子TLV声明的Length超出了父TLV：解析时忽略，由校验器拒绝
+        byte[] bytes = {0x21, 0x03, 0x01, 0x05, 0x00};
+        TLVDecodeResult result = TLVDecoder.decode(bytes, 0, bytes.length);
+        assertEquals(1, result.getTagValue());
+        assertNull(result.getResultByTagValue(1));
+        assertEquals(TLVValidator.CHILD_OUT_OF_BOUNDS, TLVValidator.DEFAULT.validate(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void batchDecode() throws Exception {
+        byte[] one = message();
+        byte[] bytes = new byte[one.length * 3];
+        for (int i = 0; i < 3; i++) {
+            System.arraycopy(one, 0, bytes, i * one.length, one.length);
+        }
+        List<TLVDecodeResult> results = TLVBatchDecoder.decode(bytes);
+        assertEquals(3, results.size());
+        assertEquals(42L, results.get(2).getResultByTagValue(1).getLongValue());
+
+        // 最后一个TLV不完整时只解析前面完整的，scan返回的结束下标告诉调用者剩余数据从哪里开始
+        int[] bounds = TLVBatchDecoder.scan(bytes, 0, bytes.length - 1);
+        assertEquals(3, bounds.length);
+        assertEquals(one.length * 2, bounds[2]);
+        assertEquals(2, TLVBatchDecoder.decode(bytes, 0, bytes.length - 1).size());
+    }
+
+    @Test
+    public void batchDecodeRejectsMalformedFrame() throws Exception {
+        byte[] one = message();
+        byte[] bytes = new byte[one.length * 3];
+        System.arraycopy(one, 0, bytes, 0, one.length);
+        // 第二个TLV的Length超出int的范围，之后的数据不能当作不完整的尾部丢弃
+        byte[] malformed = {0x01, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f};
+        System.arraycopy(malformed, 0, bytes, one.length, malformed.length);
+        try {
+            TLVBatchDecoder.decode(bytes);
+            fail();
+        } catch (IOException e) {
+            assertEquals(TLVValidator.getErrorMessage(TLVValidator.INVALID_LENGTH) + " at offset " + one.length, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package tlv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TLVFramerTest {
+
+    private static List<byte[]> frames() throws IOException {
+        List<byte[]> frames = new ArrayList<byte[]>();
+        for (int i = 0; i < 20; i++) {
+            TLVObject child = new TLVObject();
+            child.put(1, (long) i);
+            child.put(2, new byte[i * 100]);
+            TLVObject root = new TLVObject();
+            root.put(i, child);
+            frames.add(root.toByteArray());
+        }
+        return frames;
+    }
+
+    private static byte[] concat(List<byte[]> frames) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            out.write(frame, 0, frame.length);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void framer() throws Exception {
+        List<byte[]> frames = frames();
+        byte[] bytes = concat(frames);
+        for (boolean direct : new boolean[]{false, true}) {
+            TLVFramer framer = new TLVFramer(16, direct);
+            List<byte[]> received = new ArrayList<byte[]>();
+            for (int offset = 0; offset < bytes.length; offset += 7) {
+                framer.write(ByteBuffer.wrap(bytes, offset, Math.min(7, bytes.length - offset)));
+                ByteBuffer frame;
+                while ((frame = framer.nextFrame()) != null) {
+                    byte[] copy = new byte[frame.remaining()];
+                    frame.get(copy);
+                    received.add(copy);
+                }
+            }
+            assertEquals(frames.size(), received.size());
+            for (int i = 0; i < frames.size(); i++) {
+                assertArrayEquals(frames.get(i), received.get(i));
+            }
+            assertEquals(0, framer.size());
+        }
+    }
+
+    @Test
+    public void frameBufferAndByteBuffer() throws Exception {
+        List<byte[]> frames = frames();
+        byte[] bytes = concat(frames);
+        TLVFrameBuffer frameBuffer = new TLVFrameBuffer(16);
+        TLVByteBuffer byteBuffer = new TLVByteBuffer();
+        List<byte[]> fromFrameBuffer = new ArrayList<byte[]>();
+        List<byte[]> fromByteBuffer = new ArrayList<byte[]>();
+        for (int offset = 0; offset < bytes.length; offset += 13) {
+            int len = Math.min(13, bytes.length - offset);
+            frameBuffer.write(bytes, offset, len);
+            byteBuffer.write(bytes, offset, len);
+            byte[] frame;
+            while ((frame = frameBuffer.cutNextTLVData()) != null) {
+                fromFrameBuffer.add(frame);
+            }
+            while (byteBuffer.hasNextTLVData()) {
+                fromByteBuffer.add(byteBuffer.cutNextTLVData());
+            }
+        }
+        assertFrames(frames, fromFrameBuffer);
+        assertFrames(frames, fromByteBuffer);
+    }
+
+    private static void assertFrames(List<byte[]> expected, List<byte[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void framerRejectsLargeFrameBeforeGrowing() {
+        TLVFramer framer = new TLVFramer(8, false, new TLVValidator(1024, 64, 64));
+        // 声明2048字节的Value
+        framer.write(ByteBuffer.wrap(new byte[]{0x01, (byte) 0x80, 0x10, 0, 0, 0, 0, 0}));
+        try {
+            framer.write(ByteBuffer.wrap(new byte[1]));
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(TLVValidator.getErrorMessage(TLVValidator.FRAME_TOO_LARGE), e.getMessage());
+        }
+        assertEquals(8, framer.capacity());
+    }
+
+    @Test
+    public void framerRejectsMalformedFrame() {
+        TLVFramer framer = new TLVFramer();
+        framer.write(ByteBuffer.wrap(new byte[]{0x21, 0x03, 0x01, 0x05, 0x00}));
+        try {
+            framer.hasNextFrame();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(TLVValidator.getErrorMessage(TLVValidator.CHILD_OUT_OF_BOUNDS), e.getMessage());
+        }
+        // 不校验时原样截取
+        TLVFramer unchecked = new TLVFramer(16, false, null);
+        unchecked.write(ByteBuffer.wrap(new byte[]{0x21, 0x03, 0x01, 0x05, 0x00}));
+        assertEquals(5, unchecked.nextFrame().remaining());
+        assertNull(unchecked.nextFrame());
+        assertFalse(unchecked.hasNextFrame());
+    }
+
+    @Test
+    public void uncheckedBuffersRejectInvalidLength() {
+        // Length超出int的范围，后面跟着一个完整的TLV
+        byte[] bytes = {0x01, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f, 0x02, 0x01, 0x05};
+        TLVByteBuffer byteBuffer = new TLVByteBuffer(null);
+        byteBuffer.write(bytes, 0, bytes.length);
+        TLVFrameBuffer frameBuffer = new TLVFrameBuffer(16, null);
+        frameBuffer.write(bytes, 0, bytes.length);
+        try {
+            byteBuffer.hasNextTLVData();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("tlv length is invalid", e.getMessage());
+        }
+        try {
+            frameBuffer.hasNextTLVData();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("tlv length is invalid", e.getMessage());
+        }
+        // 没有记住错误的总字节数，再次检查时仍然抛出异常
+        try {
+            frameBuffer.cutNextTLVData();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("tlv length is invalid", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package tlv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class TLVHistogramTest {
+
+    @Test
+    public void buckets() {
+        TLVHistogram histogram = new TLVHistogram();
+        long[] values = {-5, 0, 1, 2, 3, 4, 7, 8, 1L << 38, 1L << 39, Long.MAX_VALUE};
+        for (long value : values) {
+            histogram.record(value);
+        }
+        long[] counts = histogram.getBucketCounts();
+        assertEquals(TLVHistogram.BUCKET_COUNT, counts.length);
+        // 负数按0记录，0和1都在第0个桶
+        assertEquals(3, counts[0]);
+        assertEquals(2, counts[1]);
+        assertEquals(2, counts[2]);
+        assertEquals(1, counts[3]);
+        assertEquals(1, counts[38]);
+        // 超出范围的值记入最后一个桶
+        assertEquals(2, counts[39]);
+        assertEquals(values.length, histogram.getCount());
+
+        assertEquals(1, TLVHistogram.getUpperBound(0));
+        assertEquals(7, TLVHistogram.getUpperBound(2));
+        assertEquals(Long.MAX_VALUE, TLVHistogram.getUpperBound(TLVHistogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    public void percentiles() {
+        TLVHistogram histogram = new TLVHistogram();
+        assertEquals(0, histogram.getPercentile(0.99));
+        assertEquals(0, histogram.getMean());
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(511, histogram.getPercentile(0.5));
+        assertEquals(1023, histogram.getPercentile(0.99));
+        assertEquals(1023, histogram.getPercentile(1));
+        assertEquals(500500, histogram.getSum());
+        assertEquals(500, histogram.getMean());
+        for (double percentile : new double[]{-0.1, 1.1}) {
+            try {
+                histogram.getPercentile(percentile);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // 期望的异常
+            }
+        }
+    }
+
+    @Test
+    public void reset() {
+        TLVHistogram histogram = new TLVHistogram();
+        histogram.record(100);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getPercentile(0.5));
+    }
+}
@@ -0,0 +1,141 @@
+package tlv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TLVLogWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] frame(int i) throws IOException {
+        TLVObject object = new TLVObject();
+        object.put(i % 5, new byte[i % 200]);
+        return object.toByteArray();
+    }
+
+    private static List<byte[]> readAll(File directory) throws IOException {
+        List<byte[]> frames = new ArrayList<byte[]>();
+        String[] names = directory.list();
+        Arrays.sort(names);
+        for (String name : names) {
+            TLVMappedFile segment = new TLVMappedFile(new File(directory, name));
+            try {
+                ByteBuffer frame;
+                while ((frame = segment.nextFrame()) != null) {
+                    byte[] bytes = new byte[frame.remaining()];
+                    frame.get(bytes);
+                    frames.add(bytes);
+                }
+            } finally {
+                segment.close();
+            }
+        }
+        return frames;
+    }
+
+    private static File lastSegment(File directory) {
+        String[] names = directory.list();
+        Arrays.sort(names);
+        return new File(directory, names[names.length - 1]);
+    }
+
+    @Test
+    public void appendAndRollSegments() throws Exception {
+        File directory = folder.newFolder("log");
+        TLVLogWriter writer = new TLVLogWriter(directory, 4096, 1);
+        List<CompletableFuture<Long>> futures = new ArrayList<CompletableFuture<Long>>();
+        long position = 0;
+        for (int i = 0; i < 500; i++) {
+            futures.add(writer.append(frame(i)));
+        }
+        for (int i = 0; i < 500; i++) {
+            assertEquals(position, futures.get(i).get().longValue());
+            position += frame(i).length;
+        }
+        writer.close();
+        assertEquals(position, writer.position());
+        assertTrue(directory.list().length > 1);
+
+        List<byte[]> frames = readAll(directory);
+        assertEquals(500, frames.size());
+        for (int i = 0; i < 500; i++) {
+            assertArrayEquals(frame(i), frames.get(i));
+        }
+    }
+
+    @Test
+    public void reopenTruncatesTornTail() throws Exception {
+        File directory = folder.newFolder("torn");
+        TLVLogWriter writer = new TLVLogWriter(directory);
+        for (int i = 0; i < 10; i++) {
+            writer.append(frame(i));
+        }
+        writer.close();
+        long end = writer.position();
+
+        // 上次写入到一半：Value不完整
+        byte[] torn = frame(150);
+        FileOutputStream out = new FileOutputStream(lastSegment(directory), true);
+        try {
+            out.write(torn, 0, torn.length - 10);
+        } finally {
+            out.close();
+        }
+
+        writer = new TLVLogWriter(directory);
+        assertEquals(end, writer.position());
+        assertEquals(end, writer.append(frame(10)).get().longValue());
+        writer.close();
+        assertEquals(11, readAll(directory).size());
+    }
+
+    @Test
+    public void reopenRejectsCorruptedTail() throws Exception {
+        File directory = folder.newFolder("corrupted");
+        TLVLogWriter writer = new TLVLogWriter(directory);
+        for (int i = 0; i < 10; i++) {
+            writer.append(frame(i));
+        }
+        writer.close();
+
+        // Length超出int的范围，不可能是一个TLV的开头
+        File segment = lastSegment(directory);
+        FileOutputStream out = new FileOutputStream(segment, true);
+        try {
+            out.write(new byte[]{0x01, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f, 0x00, 0x00});
+        } finally {
+            out.close();
+        }
+        long size = segment.length();
+        try {
+            new TLVLogWriter(directory);
+            fail();
+        } catch (IOException e) {
+            // 期望的异常
+        }
+        // 没有截掉任何数据
+        RandomAccessFile file = new RandomAccessFile(segment, "r");
+        try {
+            assertEquals(size, file.length());
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package tlv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TLVObjectTest {
+
+    @Test
+    public void roundTrip() throws Exception {
+        TLVObject user = new TLVObject();
+        user.put(1, 10086L);
+        user.put(2, "nick");
+        user.put(3, new byte[]{1, 2, 3});
+        user.put(4, new TLVObject());
+        TLVObject root = new TLVObject();
+        root.put(100, user);
+        root.put(200, -1L);
+
+        byte[] bytes = root.toByteArray();
+        assertEquals(bytes.length, root.size());
+        TLVDecodeResult result = TLVDecoder.decode(bytes, 0, bytes.length);
+        assertEquals(100, result.getTagValue());
+        assertEquals(TLVEncoder.CONSTRUCTED_DATA, result.getDataType());
+        assertEquals(10086L, result.getResultByTagValue(1).getLongValue());
+        assertEquals("nick", result.getResultByTagValue(2).getStringValue());
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) result.getResultByTagValue(3).getValue());
+        // 空的TLVObject不编码
+        assertNull(result.getResultByTagValue(4));
+    }
+
+    @Test
+    public void largeTagValues() throws Exception {
+        int[] tagValues = {0, 30, 31, 127, 128, 1 << 14, 1 << 21, 1 << 28, Integer.MAX_VALUE};
+        for (int tagValue : tagValues) {
+            TLVObject object = new TLVObject();
+            object.put(tagValue, (long) tagValue);
+            byte[] bytes = object.toByteArray();
+            TLVDecodeResult result = TLVDecoder.decode(bytes, 0, bytes.length);
+            assertEquals(tagValue, result.getTagValue());
+            assertEquals(tagValue, result.getLongValue());
+            assertEquals(bytes.length, TLVValidator.DEFAULT.validate(bytes, 0, bytes.length));
+        }
+    }
+
+    @Test
+    public void putCopiesValue() throws Exception {
+        byte[] value = {1, 2, 3};
+        TLVObject object = new TLVObject();
+        object.put(1, value);
+        value[0] = 9;
+        TLVDecodeResult result = TLVDecoder.decode(object.toByteArray(), 0, object.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) result.getValue());
+    }
+
+    @Test
+    public void putSharedKeepsReference() throws Exception {
+        byte[] payload = new byte[TLVObject.GATHER_THRESHOLD * 3];
+        new Random(1).nextBytes(payload);
+        TLVObject object = new TLVObject();
+        object.putShared(7, payload);
+        ByteBuffer[] buffers = object.toByteBuffers();
+        assertEquals(2, buffers.length);
+        assertSame(payload, buffers[1].array());
+        assertArrayEquals(object.toByteArray(), concat(buffers));
+    }
+
+    @Test
+    public void toByteBuffersMatchesToByteArray() throws Exception {
+        Random random = new Random(5);
+        for (int i = 0; i < 100; i++) {
+            TLVObject root = new TLVObject();
+            int count = 1 + random.nextInt(6);
+            for (int j = 0; j < count; j++) {
+                byte[] value = new byte[random.nextBoolean() ? random.nextInt(50) : 1000 + random.nextInt(3000)];
+                random.nextBytes(value);
+                if (random.nextBoolean()) {
+                    root.putShared(j, value);
+                } else {
+                    TLVObject child = new TLVObject();
+                    child.putShared(1, value);
+                    child.put(2, (long) j);
+                    root.put(40 + j, child);
+                }
+            }
+            assertArrayEquals(root.toByteArray(), concat(root.toByteBuffers()));
+        }
+    }
+
+    @Test
+    public void writeToRequiresBlockingChannel() throws Exception {
+        TLVObject object = new TLVObject();
+        object.put(1, "hello");
+        Pipe pipe = Pipe.open();
+        try {
+            assertEquals(object.toByteArray().length, object.writeTo(pipe.sink()));
+            ByteBuffer read = ByteBuffer.allocate(64);
+            pipe.source().read(read);
+            read.flip();
+            assertArrayEquals(object.toByteArray(), concat(new ByteBuffer[]{read}));
+
+            // 非阻塞的channel写满后会一直返回0，不能在这里空转
+            pipe.sink().configureBlocking(false);
+            try {
+                object.writeTo(pipe.sink());
+                fail();
+            } catch (IllegalArgumentException e) {
+                // 期望的异常
+            }
+        } finally {
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
+
+    private static byte[] concat(ByteBuffer[] buffers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : buffers) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.duplicate().get(bytes);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+}
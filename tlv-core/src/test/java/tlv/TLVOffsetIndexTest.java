@@ -0,0 +1,86 @@
+package tlv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TLVOffsetIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static long append(File file, int from, int to) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            for (int i = from; i < to; i++) {
+                TLVObject object = new TLVObject();
+                object.put(i % 3, new byte[i]);
+                out.write(object.toByteArray());
+            }
+            return out.getChannel().size();
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void buildAndUpdate() throws Exception {
+        File data = folder.newFile("data.tlv");
+        append(data, 0, 10);
+        TLVOffsetIndex index = TLVOffsetIndex.open(data);
+        try {
+            assertEquals(10, index.size());
+            assertEquals(0, index.getOffset(0));
+            assertEquals(2, index.getTagValue(5));
+            assertArrayEquals(new int[]{1, 4, 7}, index.getOrdinals(1));
+        } finally {
+            index.close();
+        }
+
+        long end = append(data, 10, 20);
+        index = TLVOffsetIndex.open(data);
+        try {
+            assertEquals(20, index.size());
+            assertEquals(end, index.getDataEnd());
+            TLVMappedFile mapped = new TLVMappedFile(data);
+            try {
+                for (int i = 0; i < 20; i++) {
+                    mapped.nextFrame();
+                    assertEquals(mapped.getFrameOffset(), index.getOffset(i));
+                    assertEquals(i, index.getOrdinal(mapped.getFrameOffset()));
+                }
+            } finally {
+                mapped.close();
+            }
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void tornTailIsNotIndexed() throws Exception {
+        File data = folder.newFile("torn.tlv");
+        long end = append(data, 0, 5);
+        FileOutputStream out = new FileOutputStream(data, true);
+        try {
+            // 只写了一半的TLV
+            out.write(new byte[]{0x01, 0x10, 0x00});
+        } finally {
+            out.close();
+        }
+        TLVOffsetIndex index = TLVOffsetIndex.open(data);
+        try {
+            assertEquals(5, index.size());
+            assertEquals(end, index.getDataEnd());
+        } finally {
+            index.close();
+        }
+    }
+}
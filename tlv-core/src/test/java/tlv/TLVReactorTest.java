@@ -0,0 +1,165 @@
+package tlv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TLVReactorTest {
+
+    private static final int ECHO_TAG = 1;
+
+    private static final int CLOSE_TAG = 2;
+
+    private final BlockingQueue<byte[]> received = new LinkedBlockingQueue<byte[]>();
+
+    private final BlockingQueue<Throwable> closed = new LinkedBlockingQueue<Throwable>();
+
+    private final CountDownLatch opened = new CountDownLatch(2);
+
+    private TLVReactor reactor;
+
+    /**
+     * 服务端收到ECHO_TAG时原样发回，收到CLOSE_TAG时在反应器线程中关闭反应器；客户端把收到的Value放入received
+     */
+    private final TLVHandler handler = new TLVHandler() {
+        @Override
+        public void onOpen(TLVConnection connection) {
+            opened.countDown();
+        }
+
+        @Override
+        public void onFrame(TLVConnection connection, TLVDecodeResult result) {
+            byte[] value = (byte[]) result.getValue();
+            if ("server".equals(connection.getAttachment())) {
+                received.add(value);
+                return;
+            }
+            if (result.getTagValue() == CLOSE_TAG) {
+                try {
+                    reactor.close();
+                } catch (Exception e) {
+                    closed.add(e);
+                }
+                return;
+            }
+            try {
+                connection.send(new TLVObject().put(ECHO_TAG, value));
+            } catch (Exception e) {
+                connection.close();
+            }
+        }
+
+        @Override
+        public void onClose(TLVConnection connection, Throwable cause) {
+            closed.add(cause != null ? cause : new Exception("closed"));
+        }
+    };
+
+    @After
+    public void tearDown() throws Exception {
+        if (reactor != null) {
+            reactor.close();
+        }
+    }
+
+    private TLVConnection start(TLVValidator validator) throws Exception {
+        return start(validator, null);
+    }
+
+    private TLVConnection start(TLVValidator validator, TLVCompressor compressor) throws Exception {
+        reactor = new TLVReactor(handler, validator, compressor);
+        InetSocketAddress address = reactor.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        reactor.start();
+        TLVConnection client = reactor.connect(address);
+        // 客户端连接收到的是服务端发回的数据
+        client.setAttachment("server");
+        assertTrue(opened.await(5, TimeUnit.SECONDS));
+        return client;
+    }
+
+    @Test(timeout = 10000)
+    public void echo() throws Exception {
+        TLVConnection client = start(TLVValidator.DEFAULT);
+        for (int i = 0; i < 100; i++) {
+            client.send(new TLVObject().put(ECHO_TAG, "message " + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals("message " + i, new String(received.take()));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void largeFrame() throws Exception {
+        TLVConnection client = start(TLVValidator.DEFAULT);
+        byte[] payload = new byte[4 * 1024 * 1024];
+        new Random(1).nextBytes(payload);
+        client.send(new TLVObject().putShared(ECHO_TAG, payload));
+        assertArrayEquals(payload, received.take());
+    }
+
+    @Test(timeout = 10000)
+    public void compressedFrame() throws Exception {
+        TLVCompressor compressor = new TLVCompressor();
+        TLVConnection client = start(TLVValidator.DEFAULT, compressor);
+        byte[] payload = new byte[64 * 1024];
+        client.send(compressor.compress(new TLVObject().putShared(ECHO_TAG, payload)));
+        // 服务端收到的是解压后的TLV
+        assertArrayEquals(payload, received.take());
+    }
+
+    @Test(timeout = 10000)
+    public void malformedFrameClosesConnection() throws Exception {
+        reactor = new TLVReactor(handler, TLVValidator.DEFAULT);
+        InetSocketAddress address = reactor.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        reactor.start();
+        Socket socket = new Socket(address.getAddress(), address.getPort());
+        try {
+            OutputStream out = socket.getOutputStream();
+            // 子TLV超出了父TLV的范围
+            out.write(new byte[]{0x21, 0x03, 0x01, 0x05, 0x00});
+            out.flush();
+            Throwable cause = closed.poll(5, TimeUnit.SECONDS);
+            assertNotNull(cause);
+            assertEquals(TLVValidator.getErrorMessage(TLVValidator.CHILD_OUT_OF_BOUNDS), cause.getMessage());
+            // 服务端已经关闭连接
+            assertEquals(-1, socket.getInputStream().read());
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void closeFromHandler() throws Exception {
+        TLVConnection client = start(TLVValidator.DEFAULT);
+        client.send(new TLVObject().put(CLOSE_TAG, 1L));
+        // 两端的连接都被关闭，反应器线程没有等待自己
+        assertNotNull(closed.poll(5, TimeUnit.SECONDS));
+        assertNotNull(closed.poll(5, TimeUnit.SECONDS));
+        reactor.close();
+    }
+
+    @Test(timeout = 10000)
+    public void shutdown() throws Exception {
+        TLVConnection client = start(null);
+        reactor.close();
+        assertNotNull(closed.poll(5, TimeUnit.SECONDS));
+        assertNotNull(closed.poll(5, TimeUnit.SECONDS));
+        assertFalse(client.isOpen());
+        reactor.close();
+    }
+}
@@ -0,0 +1,143 @@
+package tlv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TLVReaderTest {
+
+    /**
+     * 每次最多返回一个字节，模拟TCP分段
+     */
+    private static InputStream trickle(byte[] bytes) {
+        return new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+
+    private static byte[] frames() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++) {
+            TLVObject child = new TLVObject();
+            child.put(1, (long) i);
+            child.put(Integer.MAX_VALUE, new byte[600]);
+            TLVObject root = new TLVObject();
+            root.put(1 << 28, child);
+            out.write(root.toByteArray());
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void readEvents() throws Exception {
+        TLVReader reader = new TLVReader(trickle(frames()));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(TLVReader.START_CONSTRUCTED, reader.next());
+            assertEquals(1 << 28, reader.getTagValue());
+            assertEquals(TLVReader.PRIMITIVE, reader.next());
+            assertEquals(i, reader.getLongValue());
+            assertEquals(TLVReader.PRIMITIVE, reader.next());
+            assertEquals(Integer.MAX_VALUE, reader.getTagValue());
+            assertArrayEquals(new byte[600], reader.getValue());
+            assertEquals(TLVReader.END_CONSTRUCTED, reader.next());
+        }
+        assertEquals(TLVReader.END_DOCUMENT, reader.next());
+    }
+
+    @Test
+    public void frameReader() throws Exception {
+        byte[] bytes = frames();
+        TLVFrameReader reader = new TLVFrameReader(trickle(bytes), 4);
+        int offset = 0;
+        byte[] frame;
+        while ((frame = reader.readFrame()) != null) {
+            assertArrayEquals(Arrays.copyOfRange(bytes, offset, offset + frame.length), frame);
+            offset += frame.length;
+        }
+        assertEquals(bytes.length, offset);
+    }
+
+    @Test
+    public void frameReaderRejectsLargeFrameBeforeReadingValue() throws Exception {
+        TLVObject object = new TLVObject();
+        object.put(1, new byte[1024]);
+        byte[] bytes = object.toByteArray();
+        // 只提供Tag和Length
+        TLVFrameReader reader = new TLVFrameReader(new ByteArrayInputStream(bytes, 0, 3), 4, new TLVValidator(512, 64, 64));
+        try {
+            reader.read();
+            fail();
+        } catch (IOException e) {
+            assertEquals(TLVValidator.getErrorMessage(TLVValidator.FRAME_TOO_LARGE), e.getMessage());
+        }
+    }
+
+    @Test
+    public void frameReaderMalformed() throws Exception {
+        byte[] bytes = {0x21, 0x03, 0x01, 0x05, 0x00};
+        try {
+            new TLVFrameReader(new ByteArrayInputStream(bytes)).read();
+            fail();
+        } catch (IOException e) {
+            assertEquals(TLVValidator.getErrorMessage(TLVValidator.CHILD_OUT_OF_BOUNDS), e.getMessage());
+        }
+    }
+
+    @Test
+    public void truncated() throws Exception {
+        byte[] bytes = frames();
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+        TLVFrameReader frameReader = new TLVFrameReader(new ByteArrayInputStream(truncated));
+        assertTrue(frameReader.readFrame() != null);
+        assertTrue(frameReader.readFrame() != null);
+        try {
+            frameReader.readFrame();
+            fail();
+        } catch (EOFException e) {
+            // 期望的异常
+        }
+
+        TLVReader reader = new TLVReader(new ByteArrayInputStream(truncated));
+        try {
+            while (reader.next() != TLVReader.END_DOCUMENT) {
+                if (reader.getEvent() == TLVReader.PRIMITIVE) {
+                    reader.getValue();
+                }
+            }
+            fail();
+        } catch (EOFException e) {
+            // 期望的异常
+        }
+    }
+
+    @Test
+    public void invalidHeader() throws Exception {
+        byte[] longTag = {(byte) 0x9f, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01, 0x00};
+        byte[] longLength = {0x01, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f};
+        for (byte[] bytes : new byte[][]{longTag, longLength}) {
+            try {
+                new TLVReader(new ByteArrayInputStream(bytes)).next();
+                fail();
+            } catch (EOFException e) {
+                fail();
+            } catch (IOException e) {
+                // 期望的异常
+            }
+        }
+        assertNull(new TLVFrameReader(new ByteArrayInputStream(new byte[0])).read());
+    }
+}
@@ -0,0 +1,140 @@
+package tlv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TLVScannerTest {
+
+    @Test
+    public void countNodes() throws Exception {
+        TLVObject child = new TLVObject();
+        child.put(5000, new byte[10]);
+        child.put(7, 1L);
+        TLVObject object = new TLVObject();
+        object.put(1, 1L);
+        object.put(2, "abc");
+        object.put(3, child);
+        // 3个最外层TLV，其中一个是Constructed类型
+        byte[] frame = object.toByteArray();
+        byte[] bytes = Arrays.copyOf(frame, frame.length * 2);
+        System.arraycopy(frame, 0, bytes, frame.length, frame.length);
+
+        TLVScanner scanner = new TLVScanner();
+        assertEquals(10, scanner.scan(bytes));
+        assertEquals(10, scanner.getNodeCount());
+        assertEquals(5, TLVDecoder.getTLVSize(frame));
+        assertEquals(2, scanner.getConstructedCount());
+        assertEquals(2, scanner.getMaxDepth());
+        assertEquals(2 * (1 + 3 + 10 + 1), scanner.getPayloadBytes());
+        assertEquals(2, scanner.getTagCount(5000));
+        assertEquals(2, scanner.getTagCount(7));
+        assertEquals(0, scanner.getTagCount(4));
+        assertEquals(0, scanner.getTagCount(4000));
+        // 按第一次出现的顺序
+        int[] expected = {1, 2, 3, 5000, 7};
+        assertEquals(expected.length, scanner.getTagValueCount());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], scanner.getTagValueAt(i));
+            assertEquals(2, scanner.getTagCountAt(i));
+        }
+        try {
+            scanner.getTagValueAt(expected.length);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // 期望的异常
+        }
+    }
+
+    @Test
+    public void manyTagValues() throws Exception {
+        // 超过散列表初始容量的tagValue种数，触发扩容；同时混入直接查找的小tagValue
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++) {
+            for (int tag = 0; tag < 200; tag++) {
+                TLVObject object = new TLVObject();
+                object.put(tag % 2 == 0 ? tag : Integer.MAX_VALUE - tag * 7919, (long) tag);
+                out.write(object.toByteArray());
+            }
+        }
+        byte[] bytes = out.toByteArray();
+        TLVScanner scanner = new TLVScanner();
+        assertEquals(600, scanner.scan(bytes));
+        assertEquals(200, scanner.getTagValueCount());
+        for (int tag = 0; tag < 200; tag++) {
+            int tagValue = tag % 2 == 0 ? tag : Integer.MAX_VALUE - tag * 7919;
+            assertEquals(3, scanner.getTagCount(tagValue));
+            assertEquals(tagValue, scanner.getTagValueAt(tag));
+        }
+        assertEquals(1, scanner.getMaxDepth());
+        assertEquals(0, scanner.getConstructedCount());
+    }
+
+    @Test
+    public void reuse() throws Exception {
+        TLVScanner scanner = new TLVScanner();
+        TLVObject first = new TLVObject();
+        for (int tag = 0; tag < 50; tag++) {
+            first.put(10000 + tag, (long) tag);
+            first.put(tag, (long) tag);
+        }
+        assertEquals(100, scanner.scan(first.toByteArray()));
+
+        TLVObject second = new TLVObject();
+        second.put(10000, 1L);
+        second.put(20000, new byte[3]);
+        assertEquals(2, scanner.scan(second.toByteArray()));
+        // 上一次的tagValue已经被清除
+        assertEquals(2, scanner.getTagValueCount());
+        assertEquals(1, scanner.getTagCount(10000));
+        assertEquals(1, scanner.getTagCount(20000));
+        assertEquals(0, scanner.getTagCount(10001));
+        assertEquals(0, scanner.getTagCount(1));
+        assertEquals(1, scanner.getMaxDepth());
+        assertEquals(4, scanner.getPayloadBytes());
+    }
+
+    @Test
+    public void deepNesting() throws Exception {
+        // 超过下标栈的初始深度
+        TLVObject object = new TLVObject();
+        object.put(1, 1L);
+        for (int i = 0; i < 40; i++) {
+            TLVObject parent = new TLVObject();
+            parent.put(2, object);
+            object = parent;
+        }
+        TLVScanner scanner = new TLVScanner();
+        assertEquals(41, scanner.scan(object.toByteArray()));
+        assertEquals(41, scanner.getMaxDepth());
+        assertEquals(40, scanner.getConstructedCount());
+    }
+
+    @Test
+    public void errors() throws Exception {
+        TLVObject child = new TLVObject();
+        child.put(1, new byte[20]);
+        TLVObject object = new TLVObject();
+        object.put(8, 1L);
+        object.put(9, child);
+        byte[] bytes = object.toByteArray();
+        TLVScanner scanner = new TLVScanner();
+        assertEquals(TLVValidator.CHILD_OUT_OF_BOUNDS, scanner.scan(bytes, 0, bytes.length - 1));
+        // 出错之前的节点已经统计
+        assertEquals(1, scanner.getNodeCount());
+        assertEquals(1, scanner.getTagCount(8));
+        // 第二个TLV的Tag不完整
+        assertEquals(TLVValidator.CHILD_OUT_OF_BOUNDS, scanner.scan(new byte[]{0x01, 0x00, (byte) 0x9f}));
+        assertEquals(1, scanner.getNodeCount());
+
+        byte[] longTag = {(byte) 0x9f, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01, 0x00};
+        assertEquals(TLVValidator.INVALID_TAG, scanner.scan(longTag));
+        byte[] longLength = {0x01, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10, 0x55};
+        assertEquals(TLVValidator.INVALID_LENGTH, scanner.scan(longLength));
+        assertEquals(0, scanner.scan(new byte[0]));
+    }
+}
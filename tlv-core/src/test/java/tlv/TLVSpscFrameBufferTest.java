@@ -0,0 +1,120 @@
+package tlv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class TLVSpscFrameBufferTest {
+
+    private static byte[] frame(int i) throws IOException {
+        TLVObject object = new TLVObject();
+        object.put(i, new byte[i % 300]);
+        return object.toByteArray();
+    }
+
+    @Test(timeout = 30000)
+    public void producerAndConsumer() throws Exception {
+        final int count = 100000;
+        final TLVSpscFrameBuffer buffer = new TLVSpscFrameBuffer(1024);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        byte[] bytes = frame(i);
+                        // 分成小块写入，空间不够时让出CPU后重试
+                        int offset = 0;
+                        while (offset < bytes.length) {
+                            int n = buffer.write(bytes, offset, Math.min(7, bytes.length - offset));
+                            if (n == 0) {
+                                Thread.yield();
+                            }
+                            offset += n;
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }
+        });
+        producer.start();
+        for (int i = 0; i < count; i++) {
+            byte[] data;
+            while ((data = buffer.cutNextTLVData()) == null) {
+                if (error.get() != null) {
+                    throw new AssertionError(error.get());
+                }
+                Thread.yield();
+            }
+            assertArrayEquals(frame(i), data);
+        }
+        producer.join();
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void longestHeader() throws Exception {
+        TLVEncodeResult encoded = TLVEncoder.encode(TLVEncoder.PRIMITIVE_FRAME, TLVEncoder.PRIMITIVE_DATA,
+                Integer.MAX_VALUE, new byte[300]);
+        byte[] bytes = encoded.toByteArray();
+        TLVSpscFrameBuffer buffer = new TLVSpscFrameBuffer(1024);
+        buffer.write(bytes, 0, bytes.length);
+        assertArrayEquals(bytes, buffer.cutNextTLVData());
+
+        // 6个字节的Tag加上5个字节的Length，声明的总字节数超过了校验器的限制
+        byte[] header = new byte[11];
+        System.arraycopy(TLVEncoder.encodeTag(TLVEncoder.PRIMITIVE_FRAME, TLVEncoder.PRIMITIVE_DATA, Integer.MAX_VALUE), 0, header, 0, 6);
+        System.arraycopy(TLVEncoder.encodeLength(1 << 28), 0, header, 6, 5);
+        buffer.write(header, 0, header.length);
+        try {
+            buffer.hasNextTLVData();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(TLVValidator.getErrorMessage(TLVValidator.FRAME_TOO_LARGE), e.getMessage());
+        }
+    }
+
+    @Test
+    public void malformedHeader() {
+        TLVSpscFrameBuffer buffer = new TLVSpscFrameBuffer(64);
+        byte[] bytes = {0x01, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f, 0x00, 0x00};
+        buffer.write(bytes, 0, bytes.length);
+        try {
+            buffer.hasNextTLVData();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(TLVValidator.getErrorMessage(TLVValidator.INVALID_LENGTH), e.getMessage());
+        }
+    }
+
+    @Test
+    public void frameLargerThanCapacity() throws Exception {
+        TLVSpscFrameBuffer buffer = new TLVSpscFrameBuffer(64);
+        byte[] bytes = frame(100);
+        assertEquals(64, buffer.write(bytes, 0, bytes.length));
+        try {
+            buffer.hasNextTLVData();
+            fail();
+        } catch (IllegalStateException e) {
+            // 期望的异常
+        }
+    }
+
+    @Test
+    public void incompleteHeaderWaits() {
+        TLVSpscFrameBuffer buffer = new TLVSpscFrameBuffer(64);
+        buffer.write(new byte[]{(byte) 0x9f, (byte) 0x80}, 0, 2);
+        assertFalse(buffer.hasNextTLVData());
+        buffer.write(new byte[]{0x01, 0x01, 0x05}, 0, 3);
+        assertTrue(buffer.hasNextTLVData());
+        assertEquals(5, buffer.cutNextTLVData().length);
+    }
+}
@@ -0,0 +1,114 @@
+package tlv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class TLVValidatorTest {
+
+    private static byte[] nested(int depth) throws IOException {
+        TLVObject object = new TLVObject();
+        object.put(1, 1L);
+        for (int i = 1; i < depth; i++) {
+            TLVObject parent = new TLVObject();
+            parent.put(2, object);
+            object = parent;
+        }
+        TLVObject root = new TLVObject();
+        root.put(3, object);
+        return root.toByteArray();
+    }
+
+    private static int validate(TLVValidator validator, byte[] bytes) {
+        int result = validator.validate(bytes, 0, bytes.length);
+        // ByteBuffer的版本必须给出相同的结果
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        assertEquals(result, validator.validate(direct, 0, bytes.length));
+        return result;
+    }
+
+    @Test
+    public void valid() throws Exception {
+        byte[] bytes = nested(10);
+        assertEquals(bytes.length, validate(TLVValidator.DEFAULT, bytes));
+        TLVValidator.DEFAULT.check(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void incomplete() throws Exception {
+        byte[] bytes = nested(3);
+        for (int length = 0; length < bytes.length; length++) {
+            assertEquals(TLVValidator.INCOMPLETE, TLVValidator.DEFAULT.validate(bytes, 0, length));
+        }
+    }
+
+    @Test
+    public void invalidTag() {
+        byte[] bytes = {(byte) 0x9f, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01, 0x00};
+        assertEquals(TLVValidator.INVALID_TAG, validate(TLVValidator.DEFAULT, bytes));
+        // 第6个字节超出int的范围
+        byte[] overflow = {(byte) 0x9f, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x08, 0x00};
+        assertEquals(TLVValidator.INVALID_TAG, validate(TLVValidator.DEFAULT, overflow));
+    }
+
+    @Test
+    public void invalidLength() {
+        byte[] bytes = {0x01, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f};
+        assertEquals(TLVValidator.INVALID_LENGTH, validate(TLVValidator.DEFAULT, bytes));
+    }
+
+    @Test
+    public void childOutOfBounds() {
+        byte[] bytes = {0x21, 0x03, 0x01, 0x05, 0x00};
+        assertEquals(TLVValidator.CHILD_OUT_OF_BOUNDS, validate(TLVValidator.DEFAULT, bytes));
+    }
+
+    @Test
+    public void frameTooLarge() throws Exception {
+        TLVValidator validator = new TLVValidator(16, 64, 64);
+        TLVObject object = new TLVObject();
+        object.put(1, new byte[16]);
+        assertEquals(TLVValidator.FRAME_TOO_LARGE, validate(validator, object.toByteArray()));
+        // 只有Tag和Length时就能拒绝
+        byte[] header = {0x01, (byte) 0x80, 0x01};
+        assertEquals(TLVValidator.FRAME_TOO_LARGE, validator.validateHeader(header, 0, header.length));
+    }
+
+    @Test
+    public void tooDeep() throws Exception {
+        byte[] bytes = nested(10);
+        assertEquals(bytes.length, validate(new TLVValidator(1024, 11, 64), bytes));
+        assertEquals(TLVValidator.TOO_DEEP, validate(new TLVValidator(1024, 10, 64), bytes));
+    }
+
+    @Test
+    public void tooManyChildren() throws Exception {
+        TLVObject child = new TLVObject();
+        for (int i = 0; i < 5; i++) {
+            child.put(i, (long) i);
+        }
+        TLVObject root = new TLVObject();
+        root.put(1, child);
+        byte[] bytes = root.toByteArray();
+        assertEquals(bytes.length, validate(new TLVValidator(1024, 64, 5), bytes));
+        assertEquals(TLVValidator.TOO_MANY_CHILDREN, validate(new TLVValidator(1024, 64, 4), bytes));
+    }
+
+    @Test
+    public void checkRejectsTrailingBytes() throws Exception {
+        byte[] bytes = nested(2);
+        byte[] padded = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, padded, 0, bytes.length);
+        try {
+            TLVValidator.DEFAULT.check(padded, 0, padded.length);
+            fail();
+        } catch (IOException e) {
+            // 期望的异常
+        }
+    }
+}